@@ -26,30 +26,50 @@
 package us.levk.rserve.client;
 
 import static java.lang.Math.min;
+import static java.net.StandardSocketOptions.TCP_NODELAY;
 import static java.net.URI.create;
+import static java.nio.channels.FileChannel.open;
 import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
-import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Arrays.copyOfRange;
+import static java.util.UUID.randomUUID;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.concurrent.Executors.newWorkStealingPool;
 import static java.util.regex.Pattern.DOTALL;
 import static java.util.regex.Pattern.MULTILINE;
 import static java.util.regex.Pattern.compile;
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.LongStream.range;
 import static java.util.stream.Stream.of;
 import static javax.websocket.ContainerProvider.getWebSocketContainer;
-import static us.levk.rserve.client.tools.reflect.Classes.base;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Type;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetSocketAddress;
 import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow.Publisher;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import javax.websocket.DeploymentException;
@@ -58,13 +78,21 @@ import javax.websocket.WebSocketContainer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import us.levk.jackson.rserve.RserveMapper;
+import us.levk.rserve.client.batch.BatchPlan;
+import us.levk.rserve.client.data.SparseMatrix;
+import us.levk.rserve.client.flow.ChannelSubscriber;
+import us.levk.rserve.client.flow.ReadPublisher;
 import us.levk.rserve.client.protocol.commands.Assign;
+import us.levk.rserve.client.protocol.commands.AssignAll;
 import us.levk.rserve.client.protocol.commands.Close;
 import us.levk.rserve.client.protocol.commands.Command;
 import us.levk.rserve.client.protocol.commands.Create;
 import us.levk.rserve.client.protocol.commands.Evaluate;
 import us.levk.rserve.client.protocol.commands.Resolve;
+import us.levk.rserve.client.protocol.commands.ResolveAll;
+import us.levk.rserve.client.protocol.commands.ResolveInto;
 import us.levk.rserve.client.protocol.commands.Write;
+import us.levk.rserve.client.pool.Pool;
 import us.levk.rserve.client.websocket.Endpoint;
 
 /**
@@ -82,6 +110,15 @@ public interface Client extends Closeable {
    * File IO operations buffer size
    */
   static final int FILE_COMMAND_BUFFER_SIZE = 1 << 18;
+  /**
+   * Maximum file reads in flight
+   */
+  static final int FILE_READ_WINDOW = 4;
+  /**
+   * Prefix of the temporary name each chunk of a chunked assignment is
+   * assigned to, suffixed uniquely per assignment
+   */
+  static final String CHUNK_NAME = ".rserve.chunk";
 
   /**
    * @param c
@@ -92,15 +129,140 @@ public interface Client extends Closeable {
    */
   <T> CompletableFuture <T> execute (Command <T> c);
 
+  /**
+   * @return whether commands are sent without waiting for the preceding
+   *         responses, commands of a multi-step operation are then submitted
+   *         up front, otherwise each once the previous one succeeds
+   */
+  default boolean pipelined () {
+    return false;
+  }
+
   /**
    * @param n
    *          name
    * @param v
-   *          value
+   *          value, a {@link SparseMatrix} is sent as its vectors and rebuilt
+   *          on the server by a following evaluation; values encoded through
+   *          the mapper are serialized once ahead of sending, held in memory
+   *          up to 256 MiB and spilled to a temporary file beyond that, the
+   *          threshold is set in bytes with the
+   *          {@code us.levk.rserve.client.spool.memory} system property
    * @return promise
    */
   default CompletableFuture <Void> assign (String n, Object v) {
-    return execute (new Assign (n, v));
+    CompletableFuture <Void> a = execute (new Assign (n, v));
+    return v instanceof SparseMatrix ? then (a, () -> evaluate (SparseMatrix.rebuild (n))) : a;
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          bytes between the position and the limit, handed to the
+   *          transport without copying and left untouched
+   * @return promise
+   */
+  default CompletableFuture <Void> assignRaw (String n, ByteBuffer d) {
+    return execute (new Assign (n, d));
+  }
+
+  /**
+   * @param v
+   *          values by name, assigned in a single command followed by an
+   *          evaluation rebuilding each {@link SparseMatrix} if any; values
+   *          encoded through the mapper are spooled as for
+   *          {@link #assign(String, Object)}
+   * @return promise
+   */
+  default CompletableFuture <Void> assignAll (Map <String, ?> v) {
+    CompletableFuture <Void> a = execute (new AssignAll (v));
+    for (Map.Entry <String, ?> e : v.entrySet ())
+      if (e.getValue () instanceof SparseMatrix) a = then (a, () -> evaluate (SparseMatrix.rebuild (e.getKey ())));
+    return a;
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param v
+   *          values, assigned into a preallocated numeric vector a chunk at a
+   *          time
+   * @param k
+   *          elements per chunk
+   * @return promise
+   */
+  default CompletableFuture <Void> assignChunked (String n, double[] v, int k) {
+    return assignChunked (n, "numeric", v.length, k, (a, z) -> copyOfRange (v, a, z));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param v
+   *          values, assigned into a preallocated integer vector a chunk at a
+   *          time
+   * @param k
+   *          elements per chunk
+   * @return promise
+   */
+  default CompletableFuture <Void> assignChunked (String n, int[] v, int k) {
+    return assignChunked (n, "integer", v.length, k, (a, z) -> copyOfRange (v, a, z));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param v
+   *          values, assigned into a preallocated list a chunk at a time
+   * @param k
+   *          elements per chunk
+   * @return promise
+   */
+  default CompletableFuture <Void> assignChunked (String n, List <?> v, int k) {
+    return assignChunked (n, "list", v.size (), k, v::subList);
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param m
+   *          vector mode
+   * @param l
+   *          length
+   * @param k
+   *          elements per chunk
+   * @param s
+   *          chunk between the start inclusive and the end exclusive
+   * @return promise, each chunk is taken and sent only once the previous one
+   *         is in place so at most one is held on either side; each splice
+   *         removes the temporary it read, so one following a failed assign
+   *         fails rather than splicing the previous chunk again, and the
+   *         temporary is removed whether or not the assignment succeeds
+   */
+  private CompletableFuture <Void> assignChunked (String n, String m, int l, int k, BiFunction <Integer, Integer, Object> s) {
+    if (k < 1) {
+      CompletableFuture <Void> p = new CompletableFuture <> ();
+      p.completeExceptionally (new IllegalArgumentException ("Chunk of " + k + " elements"));
+      return p;
+    }
+    String t = "`" + n.replace ("\\", "\\\\").replace ("`", "\\`") + "`";
+    String h = CHUNK_NAME + "." + randomUUID ().toString ().replace ("-", "");
+    CompletableFuture <Void> p = evaluate (t + " <- vector ('" + m + "', " + l + ")");
+    String c = m.equals ("list") ? "as.list (" + h + ")" : h;
+    for (long i = 0; i < l; i += k) {
+      int a = (int) i, z = (int) min (i + k, l);
+      String e = t + "[" + (a + 1) + ":" + z + "] <- " + c + "; rm (" + h + ")";
+      p = p.thenCompose (x -> then (assign (h, s.apply (a, z)), () -> evaluate (e)));
+    }
+    if (l < 1) return p;
+    CompletableFuture <Void> r = new CompletableFuture <> ();
+    p.whenComplete ( (x, f) -> evaluate ("suppressWarnings (rm (" + h + "))").whenComplete ( (y, g) -> {
+      if (f != null) r.completeExceptionally (f);
+      else if (g != null) r.completeExceptionally (g);
+      else r.complete (null);
+    }));
+    return r;
   }
 
   /**
@@ -116,6 +278,109 @@ public interface Client extends Closeable {
     return execute (new Resolve <> (n, t));
   }
 
+  /**
+   * @param n
+   *          name
+   * @param t
+   *          type
+   * @param d
+   *          maximum number of distinct strings of a character vector or data
+   *          frame shared between equal values; a factor resolves to its
+   *          labels for a {@code String[]} target, equal labels sharing their
+   *          level, and to {@link us.levk.rserve.client.data.Factor} for that
+   *          target
+   * @param <T>
+   *          type
+   * @return promise
+   */
+  default <T> CompletableFuture <T> resolve (String n, Type t, int d) {
+    return execute (new Resolve <> (n, t, d));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination
+   * @return promise of the destination, failed if the length differs
+   */
+  default CompletableFuture <double[]> resolveInto (String n, double[] d) {
+    return execute (new ResolveInto <> (n, d));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination, filled between its position and limit
+   * @return promise of the destination, failed if the length differs
+   */
+  default CompletableFuture <DoubleBuffer> resolveInto (String n, DoubleBuffer d) {
+    return execute (new ResolveInto <> (n, d));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination
+   * @return promise of the destination, failed if the length differs
+   */
+  default CompletableFuture <int[]> resolveInto (String n, int[] d) {
+    return execute (new ResolveInto <> (n, d));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination, filled between its position and limit
+   * @return promise of the destination, failed if the length differs
+   */
+  default CompletableFuture <IntBuffer> resolveInto (String n, IntBuffer d) {
+    return execute (new ResolveInto <> (n, d));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination
+   * @return promise of the destination, failed if the length differs
+   */
+  default CompletableFuture <long[]> resolveInto (String n, long[] d) {
+    return execute (new ResolveInto <> (n, d));
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination, filled between its position and limit
+   * @return promise of the destination, failed if the length differs
+   */
+  default CompletableFuture <LongBuffer> resolveInto (String n, LongBuffer d) {
+    return execute (new ResolveInto <> (n, d));
+  }
+
+  /**
+   * @param n
+   *          name of a raw vector
+   * @return promise of a read only view of the bytes within the response
+   */
+  default CompletableFuture <ByteBuffer> resolveRaw (String n) {
+    return execute (new Resolve <> (n, ByteBuffer.class));
+  }
+
+  /**
+   * @param t
+   *          target types by name, resolved in a single command
+   * @return promise of values by name
+   */
+  default CompletableFuture <Map <String, Object>> resolveAll (Map <String, Type> t) {
+    return execute (new ResolveAll (t));
+  }
+
   /**
    * @param c
    *          code
@@ -136,17 +401,16 @@ public interface Client extends Closeable {
     try {
       long l = f.length ();
       RandomAccessFile s = new RandomAccessFile (f, "r");
-      range (0, 1 + l / FILE_COMMAND_BUFFER_SIZE).map (q -> q * FILE_COMMAND_BUFFER_SIZE).mapToObj (q -> {
+      CompletableFuture <Void> w = range (0, 1 + l / FILE_COMMAND_BUFFER_SIZE).map (q -> q * FILE_COMMAND_BUFFER_SIZE).mapToObj (q -> {
         try {
           return s.getChannel ().map (READ_ONLY, q, min (FILE_COMMAND_BUFFER_SIZE, l - q));
         } catch (IOException e) {
           throw new UndeclaredThrowableException (e);
         }
-      }).reduce (execute (new Create (f.getName ())), (c, b) -> c.thenCompose (x -> {
-        return execute (new Write (b));
-      }), (x, y) -> {
+      }).reduce (execute (new Create (f.getName ())), (c, b) -> then (c, () -> execute (new Write (b))), (x, y) -> {
         throw new UnsupportedOperationException ();
-      }).thenCompose (x -> execute (new Close ())).whenComplete ( (x, e) -> {
+      });
+      then (w, () -> execute (new Close ())).whenComplete ( (x, e) -> {
         try {
           s.close ();
         } catch (Exception i) {
@@ -165,6 +429,63 @@ public interface Client extends Closeable {
     return p;
   }
 
+  /**
+   * @param p
+   *          preceding steps
+   * @param s
+   *          submission of the next step
+   * @return promise of the preceding and the next step, the next step is
+   *         submitted right away if pipelined, otherwise once the preceding
+   *         ones succeed and not at all if any fails
+   */
+  private CompletableFuture <Void> then (CompletableFuture <Void> p, Supplier <CompletableFuture <Void>> s) {
+    return pipelined () ? p.thenCombine (s.get (), (x, y) -> x) : p.thenCompose (x -> s.get ());
+  }
+
+  /**
+   * @param n
+   *          remote file name
+   * @param t
+   *          local target
+   * @return promise
+   */
+  default CompletableFuture <Void> pull (String n, Path t) {
+    return pull (n, t, FILE_COMMAND_BUFFER_SIZE);
+  }
+
+  /**
+   * @param n
+   *          remote file name
+   * @param t
+   *          local target
+   * @param s
+   *          read size
+   * @return promise
+   */
+  default CompletableFuture <Void> pull (String n, Path t, int s) {
+    try {
+      ChannelSubscriber c = new ChannelSubscriber (open (t, CREATE, WRITE, TRUNCATE_EXISTING));
+      pull (n, s).subscribe (c);
+      return c.promise ();
+    } catch (IOException | RuntimeException e) {
+      CompletableFuture <Void> p = new CompletableFuture <> ();
+      p.completeExceptionally (e);
+      return p;
+    }
+  }
+
+  /**
+   * @param n
+   *          remote file name
+   * @param s
+   *          read size
+   * @return publisher of the file content, each subscription reads the file
+   *         anew
+   */
+  default Publisher <ByteBuffer> pull (String n, int s) {
+    return new ReadPublisher (this, n, s, FILE_READ_WINDOW);
+  }
+
   /**
    * @param j
    *          job
@@ -173,190 +494,13 @@ public interface Client extends Closeable {
    * @return promise
    */
   default <T> CompletableFuture <T> batch (T j) {
-    CompletableFuture <Void> v = completedFuture (null);
-
-    // push
-    v = base (j.getClass ()).reduce (v, (w, c) -> {
-      // fields
-      w = of (c.getDeclaredFields ()).reduce (w, (u, f) -> {
-        Push l = f.getAnnotation (Push.class);
-        return l == null ? u : u.thenCompose (x -> {
-          CompletableFuture <Void> p = new CompletableFuture <> ();
-
-          try {
-            if (!f.isAccessible ()) f.setAccessible (true);
-            push ((File) f.get (j)).whenComplete ( (y, e) -> {
-              if (e != null) p.completeExceptionally (e);
-              else p.complete (null);
-            });
-          } catch (Exception e) {
-            p.completeExceptionally (e);
-          }
-
-          return p;
-        });
-      }, (x, y) -> {
-        throw new UnsupportedOperationException ();
-      });
-
-      // methods
-      w = of (c.getDeclaredMethods ()).reduce (w, (u, m) -> {
-        Push l = m.getAnnotation (Push.class);
-        return l == null ? u : u.thenCompose (x -> {
-          CompletableFuture <Void> p = new CompletableFuture <> ();
-
-          try {
-            if (!m.isAccessible ()) m.setAccessible (true);
-            push ((File) m.invoke (j)).whenComplete ( (y, e) -> {
-              if (e != null) p.completeExceptionally (e);
-              else p.complete (null);
-            });
-          } catch (Exception e) {
-            p.completeExceptionally (e);
-          }
-
-          return p;
-        });
-      }, (x, y) -> {
-        throw new UnsupportedOperationException ();
-      });
-
-      return w;
-    }, (x, y) -> {
-      throw new UnsupportedOperationException ();
-    });
-
-    // assign
-    v = base (j.getClass ()).reduce (v, (w, c) -> {
-      // fields
-      w = of (c.getDeclaredFields ()).reduce (w, (u, f) -> {
-        us.levk.rserve.client.Assign a = f.getAnnotation (us.levk.rserve.client.Assign.class);
-        return a == null ? u : u.thenCompose (x -> {
-          CompletableFuture <Void> p = new CompletableFuture <> ();
-
-          try {
-            if (!f.isAccessible ()) f.setAccessible (true);
-            assign (a.value ().equals ("") ? f.getName () : a.value (), f.get (j)).whenComplete ( (y, e) -> {
-              if (e != null) p.completeExceptionally (e);
-              else p.complete (null);
-            });
-          } catch (Exception e) {
-            p.completeExceptionally (e);
-          }
-
-          return p;
-        });
-      }, (x, y) -> {
-        throw new UnsupportedOperationException ();
-      });
-
-      // methods
-      w = of (c.getDeclaredMethods ()).reduce (w, (u, m) -> {
-        us.levk.rserve.client.Assign a = m.getAnnotation (us.levk.rserve.client.Assign.class);
-        return a == null ? u : u.thenCompose (x -> {
-          CompletableFuture <Void> p = new CompletableFuture <> ();
-
-          try {
-            if (!m.isAccessible ()) m.setAccessible (true);
-            assign (a.value ().equals ("") ? m.getName () : a.value (), m.invoke (j)).whenComplete ( (y, e) -> {
-              if (e != null) p.completeExceptionally (e);
-              else p.complete (null);
-            });
-          } catch (Exception e) {
-            p.completeExceptionally (e);
-          }
-
-          return p;
-        });
-      }, (x, y) -> {
-        throw new UnsupportedOperationException ();
-      });
-
-      return w;
-    }, (x, y) -> {
-      throw new UnsupportedOperationException ();
-    });
-
-    // evaluate
-    v = base (j.getClass ()).reduce (v, (w, c) -> {
-      // script
-      Rscript s = c.getAnnotation (Rscript.class);
-      if (s != null) w = w.thenCompose (x -> {
-        CompletableFuture <Void> p = new CompletableFuture <> ();
-
-        try (BufferedReader q =
-            new BufferedReader (new InputStreamReader (j.getClass ().getResourceAsStream (s.value ())))) {
-          return evaluate (q.lines ().collect (joining ("\n"))).thenRun ( () -> p.complete (null));
-        } catch (Exception e) {
-          p.completeExceptionally (e);
-        }
-
-        return p;
-      });
-
-      // code
-      R r = c.getAnnotation (R.class);
-      if (r != null) w = w.thenCompose (x -> evaluate (r.value ()));
-
-      return w;
-    }, (x, y) -> {
-      throw new UnsupportedOperationException ();
-    });
-
-    // resolve
-    v = base (j.getClass ()).reduce (v, (w, c) -> {
-      // fields
-      w = of (c.getDeclaredFields ()).reduce (w, (u, f) -> {
-        us.levk.rserve.client.Resolve r = f.getAnnotation (us.levk.rserve.client.Resolve.class);
-        return r == null ? u : u.thenCompose (x -> {
-          CompletableFuture <Void> p = new CompletableFuture <> ();
-
-          String n = r.value ().equals ("") ? f.getName () : r.value ();
-          resolve (n, f.getGenericType ()).thenAccept (t -> {
-            try {
-              if (!f.isAccessible ()) f.setAccessible (true);
-              f.set (j, t);
-              p.complete (null);
-            } catch (Exception e) {
-              p.completeExceptionally (e);
-            }
-          });
-
-          return p;
-        });
-      }, (x, y) -> {
-        throw new UnsupportedOperationException ();
-      });
-
-      // methods
-      w = of (c.getDeclaredMethods ()).reduce (w, (u, m) -> {
-        us.levk.rserve.client.Resolve r = m.getAnnotation (us.levk.rserve.client.Resolve.class);
-        return r == null ? u : u.thenCompose (x -> {
-          CompletableFuture <Void> p = new CompletableFuture <> ();
-
-          String n = r.value ().equals ("") ? m.getName () : r.value ();
-          resolve (n, m.getGenericParameterTypes ()[0]).thenAccept (t -> {
-            try {
-              if (!m.isAccessible ()) m.setAccessible (true);
-              m.invoke (j, t);
-              p.complete (null);
-            } catch (Exception e) {
-              p.completeExceptionally (e);
-            }
-          });
-
-          return p;
-        });
-      }, (x, y) -> {
-        throw new UnsupportedOperationException ();
-      });
-
-      return w;
-    }, (x, y) -> {
-      throw new UnsupportedOperationException ();
-    });
-
-    return v.thenApply (x -> j);
+    try {
+      return BatchPlan.<T> executor (j.getClass ()).execute (this, j);
+    } catch (RuntimeException e) {
+      CompletableFuture <T> p = new CompletableFuture <> ();
+      p.completeExceptionally (e);
+      return p;
+    }
   }
 
   /**
@@ -416,7 +560,39 @@ public interface Client extends Closeable {
      * @return websocket client builder
      */
     public WsBuilder websocket (WebSocketContainer c) {
-      return new WsBuilder (c);
+      return new WsBuilder (c, false);
+    }
+
+    /**
+     * @return native QAP1 TCP client builder
+     */
+    public TcpBuilder tcp () {
+      return new TcpBuilder ();
+    }
+
+    /**
+     * @return native QAP1 unix domain socket client builder
+     */
+    public UnixBuilder unix () {
+      return new UnixBuilder ();
+    }
+
+    /**
+     * @param s
+     *          connected channel, closed if the handshake fails
+     * @return client
+     * @throws IOException
+     *           on handshake
+     */
+    private Client connect (SocketChannel s) throws IOException {
+      try {
+        us.levk.rserve.client.socket.Endpoint e = new us.levk.rserve.client.socket.Endpoint (mapper, executor);
+        e.connect (s);
+        return e;
+      } catch (IOException e) {
+        s.close ();
+        throw e;
+      }
     }
 
     /**
@@ -429,13 +605,20 @@ public interface Client extends Closeable {
        * Container
        */
       private final WebSocketContainer container;
+      /**
+       * Whether commands are sent without waiting for the preceding responses
+       */
+      private final boolean pipelined;
 
       /**
        * @param c
        *          container
+       * @param p
+       *          pipelined
        */
-      private WsBuilder (WebSocketContainer c) {
+      private WsBuilder (WebSocketContainer c, boolean p) {
         container = c;
+        pipelined = p;
       }
 
       /**
@@ -444,7 +627,17 @@ public interface Client extends Closeable {
        * @return copy of this builder with container specified
        */
       public WsBuilder with (WebSocketContainer c) {
-        return new WsBuilder (c);
+        return new WsBuilder (c, pipelined);
+      }
+
+      /**
+       * @param p
+       *          whether to send commands without waiting for responses to
+       *          the preceding ones
+       * @return copy of this builder with pipelining specified
+       */
+      public WsBuilder pipelined (boolean p) {
+        return new WsBuilder (container, p);
       }
 
       /**
@@ -470,10 +663,241 @@ public interface Client extends Closeable {
        *           on connect
        */
       public Client connect (URI u) throws DeploymentException, IOException {
-        Endpoint e = new Endpoint (mapper, executor);
+        Endpoint e = new Endpoint (mapper, executor, pipelined);
         container.connectToServer (e, u);
         return e;
       }
+
+      /**
+       * @param n
+       *          number of sessions per endpoint URI
+       * @return pooled websocket client builder
+       */
+      public PoolBuilder pool (int n) {
+        return new PoolBuilder (n, null, null);
+      }
+
+      /**
+       * Pooled websocket client builder
+       * 
+       * @author levk
+       */
+      public class PoolBuilder {
+        /**
+         * Sessions per endpoint URI
+         */
+        private final int size;
+        /**
+         * Code evaluated on each session before the pool is handed out
+         */
+        private final String warmup;
+        /**
+         * Code evaluated on a session before it is reused after a lease
+         */
+        private final String reset;
+
+        /**
+         * @param n
+         *          size
+         * @param w
+         *          warm-up code
+         * @param r
+         *          reset code
+         */
+        private PoolBuilder (int n, String w, String r) {
+          if (n < 1) throw new IllegalArgumentException ("Pool size must be positive");
+          size = n;
+          warmup = w;
+          reset = r;
+        }
+
+        /**
+         * @param n
+         *          number of sessions per endpoint URI
+         * @return copy of this builder with the size specified
+         */
+        public PoolBuilder size (int n) {
+          return new PoolBuilder (n, warmup, reset);
+        }
+
+        /**
+         * @param c
+         *          code to evaluate on each session upon connect, e.g. to load
+         *          libraries
+         * @return copy of this builder with the warm-up specified
+         */
+        public PoolBuilder warmup (String c) {
+          return new PoolBuilder (size, c, reset);
+        }
+
+        /**
+         * @param c
+         *          code to evaluate on a session when its lease is returned,
+         *          e.g. to clear the global environment
+         * @return copy of this builder with the reset specified
+         */
+        public PoolBuilder reset (String c) {
+          return new PoolBuilder (size, warmup, c);
+        }
+
+        /**
+         * @param u
+         *          endpoint URIs
+         * @return pooled client
+         * @throws DeploymentException
+         *           on connect
+         * @throws IOException
+         *           on connect or warm-up
+         */
+        public Pool connect (String... u) throws DeploymentException, IOException {
+          return connect (of (u).map (URI::create).toArray (URI[]::new));
+        }
+
+        /**
+         * @param u
+         *          endpoint URIs
+         * @return pooled client
+         * @throws DeploymentException
+         *           on connect
+         * @throws IOException
+         *           on connect or warm-up
+         */
+        public Pool connect (URI... u) throws DeploymentException, IOException {
+          List <Client> m = new ArrayList <> ();
+          Map <Client, URI> a = new ConcurrentHashMap <> ();
+          try {
+            for (URI x : u)
+              for (int i = 0; i < size; i++) {
+                m.add (WsBuilder.this.connect (x));
+                a.put (m.get (m.size () - 1), x);
+              }
+            if (warmup != null) allOf (m.stream ().map (c -> c.evaluate (warmup)).toArray (CompletableFuture[]::new)).join ();
+            return new Pool (m, reset, c -> supplyAsync ( () -> replace (a, a.remove (c)), executor));
+          } catch (DeploymentException | IOException | RuntimeException e) {
+            for (Client c : m)
+              try {
+                c.close ();
+              } catch (IOException x) {
+                e.addSuppressed (x);
+              }
+            if (e instanceof CompletionException) throw new IOException ("Unable to warm up pool", e.getCause ());
+            else throw e;
+          }
+        }
+
+        /**
+         * @param a
+         *          endpoint URIs by session
+         * @param u
+         *          endpoint URI of the evicted session
+         * @return warmed up session connected in place of the evicted one
+         */
+        private Client replace (Map <Client, URI> a, URI u) {
+          try {
+            Client c = WsBuilder.this.connect (u);
+            try {
+              if (warmup != null) c.evaluate (warmup).join ();
+            } catch (RuntimeException e) {
+              c.close ();
+              throw e;
+            }
+            a.put (c, u);
+            return c;
+          } catch (DeploymentException | IOException e) {
+            throw new CompletionException (e);
+          }
+        }
+      }
+    }
+
+    /**
+     * Native QAP1 TCP client builder
+     * 
+     * @author levk
+     */
+    public class TcpBuilder {
+
+      /**
+       * Hidden
+       */
+      private TcpBuilder () {}
+
+      /**
+       * @param h
+       *          host
+       * @param p
+       *          port
+       * @return client
+       * @throws IOException
+       *           on connect
+       */
+      public Client connect (String h, int p) throws IOException {
+        return connect (new InetSocketAddress (h, p));
+      }
+
+      /**
+       * @param a
+       *          address
+       * @return client
+       * @throws IOException
+       *           on connect
+       */
+      public Client connect (InetSocketAddress a) throws IOException {
+        SocketChannel s = SocketChannel.open (a);
+        try {
+          s.setOption (TCP_NODELAY, true);
+        } catch (IOException e) {
+          s.close ();
+          throw e;
+        }
+        return Builder.this.connect (s);
+      }
+    }
+
+    /**
+     * Native QAP1 unix domain socket client builder
+     * 
+     * @author levk
+     */
+    public class UnixBuilder {
+
+      /**
+       * Hidden
+       */
+      private UnixBuilder () {}
+
+      /**
+       * @param p
+       *          socket path
+       * @return client
+       * @throws IOException
+       *           on connect
+       */
+      public Client connect (String p) throws IOException {
+        return connect (Path.of (p));
+      }
+
+      /**
+       * @param p
+       *          socket path
+       * @return client
+       * @throws IOException
+       *           on connect
+       */
+      public Client connect (Path p) throws IOException {
+        return connect (UnixDomainSocketAddress.of (p));
+      }
+
+      /**
+       * @param a
+       *          address
+       * @return client
+       * @throws IOException
+       *           on connect
+       */
+      public Client connect (UnixDomainSocketAddress a) throws IOException {
+        return Builder.this.connect (SocketChannel.open (a));
+      }
     }
   }
 
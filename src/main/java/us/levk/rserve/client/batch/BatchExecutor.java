@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.batch;
+
+import static us.levk.rserve.client.batch.BatchPlan.failed;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import us.levk.rserve.client.Client;
+
+/**
+ * Executes batch jobs of a type, implementations named after the job type
+ * with an {@value #SUFFIX} suffix are generated by {@link BatchProcessor} and
+ * preferred over the reflective {@link BatchPlan}
+ * 
+ * @author levk
+ * @param <T>
+ *          job type
+ */
+@FunctionalInterface
+public interface BatchExecutor <T> {
+
+  /**
+   * Generated executor binary name suffix
+   */
+  static final String SUFFIX = "$RserveBatch";
+
+  /**
+   * @param c
+   *          client
+   * @param j
+   *          job
+   * @return promise of the job once all steps complete, steps are submitted
+   *         up front if the client is pipelined, otherwise each once the
+   *         previous ones succeed
+   */
+  CompletableFuture <T> execute (Client c, T j);
+
+  /**
+   * @param c
+   *          client
+   * @param v
+   *          preceding steps
+   * @param s
+   *          step submission
+   * @return promise of the preceding steps and the step, submitted right away
+   *         if the client is pipelined, otherwise once the preceding steps
+   *         succeed and not at all if any fails
+   */
+  static CompletableFuture <Void> step (Client c, CompletableFuture <Void> v, Supplier <CompletableFuture <Void>> s) {
+    return c.pipelined () ? v.thenCombine (submit (s), (x, y) -> x) : v.thenCompose (x -> submit (s));
+  }
+
+  /**
+   * @param s
+   *          step submission
+   * @return promise of the step, failed if submission throws
+   */
+  static CompletableFuture <Void> submit (Supplier <CompletableFuture <Void>> s) {
+    try {
+      return s.get ();
+    } catch (RuntimeException e) {
+      return failed (e);
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.batch;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Stream.of;
+import static us.levk.rserve.client.tools.reflect.Classes.base;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import us.levk.rserve.client.Assign;
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.Push;
+import us.levk.rserve.client.R;
+import us.levk.rserve.client.Resolve;
+import us.levk.rserve.client.Rscript;
+
+/**
+ * Execution plan of a batch job type, the annotations of the type and its
+ * supertypes are inspected once and compiled to an ordered list of steps:
+ * pushes, assignments, evaluations and resolutions, members are accessed via
+ * method handles and scripts are read ahead. Multiple assignments and
+ * multiple resolutions are each sent as a single command
+ * 
+ * @author levk
+ */
+public class BatchPlan implements BatchExecutor <Object> {
+
+  /**
+   * Plans by job type
+   */
+  private static final ClassValue <BatchPlan> PLANS = new ClassValue <BatchPlan> () {
+    @Override
+    protected BatchPlan computeValue (Class <?> t) {
+      return new BatchPlan (t);
+    }
+  };
+  /**
+   * Executors by job type
+   */
+  private static final ClassValue <BatchExecutor <?>> EXECUTORS = new ClassValue <BatchExecutor <?>> () {
+    @Override
+    protected BatchExecutor <?> computeValue (Class <?> t) {
+      try {
+        Class <?> g = Class.forName (t.getName () + SUFFIX, true, t.getClassLoader ());
+        if (BatchExecutor.class.isAssignableFrom (g)) return (BatchExecutor <?>) g.getConstructor ().newInstance ();
+      } catch (ReflectiveOperationException | LinkageError e) {}
+      return plan (t);
+    }
+  };
+
+  /**
+   * @param t
+   *          job type
+   * @return reflective plan for the job type
+   */
+  public static BatchPlan plan (Class <?> t) {
+    return PLANS.get (t);
+  }
+
+  /**
+   * @param t
+   *          job type
+   * @param <T>
+   *          job type
+   * @return generated executor for the job type if one is present, the
+   *         reflective plan otherwise
+   */
+  @SuppressWarnings ("unchecked")
+  public static <T> BatchExecutor <T> executor (Class <?> t) {
+    return (BatchExecutor <T>) EXECUTORS.get (t);
+  }
+
+  /**
+   * Single step of a plan
+   * 
+   * @author levk
+   */
+  @FunctionalInterface
+  private static interface Step {
+    /**
+     * @param c
+     *          client
+     * @param j
+     *          job
+     * @return promise
+     */
+    CompletableFuture <Void> submit (Client c, Object j);
+  }
+
+  /**
+   * Steps in order of submission
+   */
+  private final List <Step> steps;
+
+  /**
+   * @param t
+   *          job type
+   */
+  private BatchPlan (Class <?> t) {
+    List <Step> s = new ArrayList <> ();
+
+    base (t).forEach (c -> members (c, Push.class).forEach (m -> {
+      MethodHandle g = getter (m);
+      s.add ( (l, j) -> submit (j, g, v -> l.push ((File) v)));
+    }));
+
+    List <String> a = new ArrayList <> ();
+    List <MethodHandle> g = new ArrayList <> ();
+    base (t).forEach (c -> members (c, Assign.class).forEach (m -> {
+      a.add (name (m.getAnnotation (Assign.class).value (), m));
+      g.add (getter (m));
+    }));
+    if (g.size () == 1) s.add ( (l, j) -> submit (j, g.get (0), v -> l.assign (a.get (0), v)));
+    else if (g.size () > 1) s.add (assignAll (a.toArray (new String[0]), g.toArray (new MethodHandle[0])));
+
+    base (t).forEach (c -> {
+      Rscript r = c.getAnnotation (Rscript.class);
+      if (r != null) {
+        try (InputStream i = t.getResourceAsStream (r.value ())) {
+          if (i == null) throw new IOException ("Unable to find script " + r.value () + " for " + t.getName ());
+          String q = new BufferedReader (new InputStreamReader (i)).lines ().collect (joining ("\n"));
+          s.add ( (l, j) -> l.evaluate (q));
+        } catch (IOException | RuntimeException e) {
+          s.add ( (l, j) -> failed (e));
+        }
+      }
+      R e = c.getAnnotation (R.class);
+      if (e != null) s.add ( (l, j) -> l.evaluate (e.value ()));
+    });
+
+    Map <String, Type> r = new LinkedHashMap <> ();
+    List <String> n = new ArrayList <> ();
+    List <MethodHandle> h = new ArrayList <> ();
+    base (t).forEach (c -> members (c, Resolve.class).forEach (m -> {
+      n.add (name (m.getAnnotation (Resolve.class).value (), m));
+      h.add (setter (m));
+      r.put (n.get (n.size () - 1),
+             m instanceof Field ? ((Field) m).getGenericType () : ((Method) m).getGenericParameterTypes ()[0]);
+    }));
+    if (h.size () > 1 && r.size () == h.size ()) s.add (resolveAll (r, n.toArray (new String[0]), h.toArray (new MethodHandle[0])));
+    else for (int i = 0; i < h.size (); i++) {
+      String q = n.get (i);
+      Type y = r.get (q);
+      MethodHandle e = h.get (i);
+      s.add ( (l, j) -> l.resolve (q, y).thenAccept (v -> set (e, j, v)));
+    }
+
+    steps = unmodifiableList (s);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.batch.BatchExecutor#execute(us.levk.rserve.client.
+   * Client, java.lang.Object)
+   */
+  @Override
+  public CompletableFuture <Object> execute (Client c, Object j) {
+    CompletableFuture <Void> v = completedFuture (null);
+    for (Step s : steps)
+      v = BatchExecutor.step (c, v, () -> s.submit (c, j));
+    return v.thenApply (x -> j);
+  }
+
+  /**
+   * @param n
+   *          names
+   * @param g
+   *          getters
+   * @return step assigning all values in a single command
+   */
+  private static Step assignAll (String[] n, MethodHandle[] g) {
+    return (l, j) -> {
+      Map <String, Object> v = new LinkedHashMap <> ();
+      try {
+        for (int i = 0; i < g.length; i++)
+          v.put (n[i], (Object) g[i].invokeExact (j));
+      } catch (Throwable e) {
+        return failed (e);
+      }
+      return l.assignAll (v);
+    };
+  }
+
+  /**
+   * @param r
+   *          target types by name
+   * @param n
+   *          names
+   * @param h
+   *          setters
+   * @return step resolving all values in a single command
+   */
+  private static Step resolveAll (Map <String, Type> r, String[] n, MethodHandle[] h) {
+    return (l, j) -> l.resolveAll (r).thenAccept (v -> {
+      for (int i = 0; i < h.length; i++)
+        set (h[i], j, v.get (n[i]));
+    });
+  }
+
+  /**
+   * @param h
+   *          setter
+   * @param j
+   *          job
+   * @param v
+   *          value
+   */
+  private static void set (MethodHandle h, Object j, Object v) {
+    try {
+      h.invokeExact (j, v);
+    } catch (RuntimeException | Error x) {
+      throw x;
+    } catch (Throwable x) {
+      throw new IllegalStateException (x);
+    }
+  }
+
+  /**
+   * @param c
+   *          declaring type
+   * @param a
+   *          annotation
+   * @return annotated fields followed by annotated methods
+   */
+  private static Stream <AccessibleObject> members (Class <?> c, Class <? extends Annotation> a) {
+    return Stream.<AccessibleObject> concat (of (c.getDeclaredFields ()), of (c.getDeclaredMethods ())).filter (m -> m.isAnnotationPresent (a))
+                                                                             .peek (m -> m.setAccessible (true));
+  }
+
+  /**
+   * @param v
+   *          annotated name
+   * @param m
+   *          member
+   * @return annotated name or member name if blank
+   */
+  private static String name (String v, AccessibleObject m) {
+    return v.equals ("") ? ((Member) m).getName () : v;
+  }
+
+  /**
+   * @param m
+   *          field or getter method
+   * @return handle of type (Object)Object
+   */
+  private static MethodHandle getter (AccessibleObject m) {
+    try {
+      MethodHandle h = m instanceof Field ? lookup ().unreflectGetter ((Field) m) : lookup ().unreflect ((Method) m);
+      return h.asType (methodType (Object.class, Object.class));
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException (e);
+    }
+  }
+
+  /**
+   * @param m
+   *          field or setter method
+   * @return handle of type (Object,Object)void
+   */
+  private static MethodHandle setter (AccessibleObject m) {
+    try {
+      MethodHandle h = m instanceof Field ? lookup ().unreflectSetter ((Field) m) : lookup ().unreflect ((Method) m);
+      return h.asType (methodType (void.class, Object.class, Object.class));
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException (e);
+    }
+  }
+
+  /**
+   * @param j
+   *          job
+   * @param g
+   *          getter
+   * @param f
+   *          submission of the value
+   * @return promise
+   */
+  private static CompletableFuture <Void> submit (Object j, MethodHandle g, Function <Object, CompletableFuture <Void>> f) {
+    try {
+      return f.apply ((Object) g.invokeExact (j));
+    } catch (Throwable e) {
+      return failed (e);
+    }
+  }
+
+  /**
+   * @param e
+   *          cause
+   * @return failed promise
+   */
+  static CompletableFuture <Void> failed (Throwable e) {
+    CompletableFuture <Void> p = new CompletableFuture <> ();
+    p.completeExceptionally (e);
+    return p;
+  }
+}
@@ -0,0 +1,392 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.batch;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+import static javax.lang.model.element.ElementKind.FIELD;
+import static javax.lang.model.element.ElementKind.METHOD;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.NestingKind.ANONYMOUS;
+import static javax.lang.model.element.NestingKind.LOCAL;
+import static javax.lang.model.type.TypeKind.ARRAY;
+import static javax.lang.model.type.TypeKind.DECLARED;
+import static javax.lang.model.type.TypeKind.TYPEVAR;
+import static javax.lang.model.type.TypeKind.VOID;
+import static javax.lang.model.type.TypeKind.WILDCARD;
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.NOTE;
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
+import static javax.tools.StandardLocation.CLASS_PATH;
+import static javax.tools.StandardLocation.SOURCE_PATH;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.tools.JavaFileManager.Location;
+
+import us.levk.rserve.client.Assign;
+import us.levk.rserve.client.Push;
+import us.levk.rserve.client.R;
+import us.levk.rserve.client.Resolve;
+import us.levk.rserve.client.Rscript;
+
+/**
+ * Generates a {@link BatchExecutor} per batch job type accessing annotated
+ * members directly and carrying script text inline, the steps are the same as
+ * those of the {@link BatchPlan} of the type. Types with members not
+ * accessible from their package, assigned or pushed methods that aren't
+ * getters, final resolved fields, type variables or scripts not found at
+ * compile time are left to the reflective plan
+ * 
+ * @author levk
+ */
+@SupportedAnnotationTypes ({ "us.levk.rserve.client.Push", "us.levk.rserve.client.Assign", "us.levk.rserve.client.R",
+                             "us.levk.rserve.client.Rscript", "us.levk.rserve.client.Resolve" })
+public class BatchProcessor extends AbstractProcessor {
+
+  /**
+   * Maximum length of a single string literal of inlined script text
+   */
+  private static final int LITERAL_LENGTH = 1 << 13;
+
+  /**
+   * Signals a job type the executor can't be generated for
+   * 
+   * @author levk
+   */
+  private static class Unsupported extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param m
+     *          reason
+     */
+    private Unsupported (String m) {
+      super (m);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+   */
+  @Override
+  public SourceVersion getSupportedSourceVersion () {
+    return SourceVersion.latestSupported ();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+   * javax.annotation.processing.RoundEnvironment)
+   */
+  @Override
+  public boolean process (Set <? extends TypeElement> a, RoundEnvironment r) {
+    Set <TypeElement> j = new LinkedHashSet <> ();
+    for (TypeElement t : a)
+      for (Element e : r.getElementsAnnotatedWith (t))
+        j.add (e instanceof TypeElement ? (TypeElement) e : (TypeElement) e.getEnclosingElement ());
+    for (TypeElement t : j)
+      try {
+        generate (t);
+      } catch (Unsupported e) {
+        processingEnv.getMessager ().printMessage (NOTE, "Batch executor not generated: " + e.getMessage (), t);
+      } catch (IOException e) {
+        processingEnv.getMessager ().printMessage (ERROR, "Unable to generate batch executor: " + e, t);
+      }
+    return false;
+  }
+
+  /**
+   * @param j
+   *          job type
+   * @throws Unsupported
+   *           if the executor can't be generated
+   * @throws IOException
+   *           on write
+   */
+  private void generate (TypeElement j) throws Unsupported, IOException {
+    for (Element e = j; e instanceof TypeElement; e = e.getEnclosingElement ())
+      if (e.getModifiers ().contains (PRIVATE) || ((TypeElement) e).getNestingKind () == LOCAL
+          || ((TypeElement) e).getNestingKind () == ANONYMOUS)
+        throw new Unsupported (j + " is not accessible from its package");
+    if (!j.getTypeParameters ().isEmpty ()) throw new Unsupported (j + " is generic");
+
+    String p = processingEnv.getElementUtils ().getPackageOf (j).getQualifiedName ().toString ();
+    String b = processingEnv.getElementUtils ().getBinaryName (j).toString ();
+    String n = (p.isEmpty () ? b : b.substring (p.length () + 1)) + BatchExecutor.SUFFIX;
+    List <TypeElement> s = base (j.asType ());
+    List <String> f = new ArrayList <> ();
+    StringBuilder c = new StringBuilder ();
+
+    for (TypeElement t : s)
+      for (Element m : members (t, Push.class, p))
+        step (c, "c.push ((java.io.File) (java.lang.Object) " + get (m) + ")");
+    List <String> a = new ArrayList <> ();
+    for (TypeElement t : s)
+      for (Element m : members (t, Assign.class, p))
+        a.add (literal (name (m.getAnnotation (Assign.class).value (), m)) + ", " + get (m));
+    if (a.size () == 1) step (c, "c.assign (" + a.get (0) + ")");
+    else if (a.size () > 1)
+      step (c, "{\n      java.util.Map <java.lang.String, java.lang.Object> a = new java.util.LinkedHashMap <> ();\n"
+               + a.stream ().map (x -> "      a.put (" + x + ");\n").collect (joining ()) + "      return c.assignAll (a);\n    }");
+    for (TypeElement t : s) {
+      Rscript q = t.getAnnotation (Rscript.class);
+      if (q != null) step (c, "c.evaluate (" + literal (script (j, p, q.value ())) + ")");
+      R e = t.getAnnotation (R.class);
+      if (e != null) step (c, "c.evaluate (" + literal (e.value ()) + ")");
+    }
+    List <String> r = new ArrayList <> ();
+    Set <String> d = new LinkedHashSet <> ();
+    List <String> e = new ArrayList <> ();
+    List <String> w = new ArrayList <> ();
+    for (TypeElement t : s)
+      for (Element m : members (t, Resolve.class, p)) {
+        TypeMirror y;
+        if (m.getKind () == FIELD) {
+          if (m.getModifiers ().contains (FINAL)) throw new Unsupported (t + "." + m + " is final");
+          y = m.asType ();
+          w.add ("j." + m.getSimpleName () + " = %s");
+        } else if (((ExecutableElement) m).getParameters ().size () == 1) {
+          y = ((ExecutableElement) m).getParameters ().get (0).asType ();
+          w.add ("j." + m.getSimpleName () + " (%s)");
+        } else throw new Unsupported (t + "." + m + " does not take a single argument");
+        if (variable (y)) throw new Unsupported (t + "." + m + " type refers to type variables");
+        String v = "TYPE_" + f.size ();
+        f.add ("  private static final java.lang.reflect.Type " + v + " = " + type (y) + ";\n");
+        String k = literal (name (m.getAnnotation (Resolve.class).value (), m));
+        d.add (k);
+        r.add (k + ", " + v);
+        e.add (boxed (y));
+      }
+    if (r.size () > 1 && d.size () == r.size ()) {
+      f.add ("  private static final java.util.Map <java.lang.String, java.lang.reflect.Type> RESOLVE = java.util.Map.ofEntries ("
+             + r.stream ().map (x -> "java.util.Map.entry (" + x + ")").collect (joining (", ")) + ");\n");
+      StringBuilder u = new StringBuilder ("c.resolveAll (RESOLVE).thenAccept (r -> {\n");
+      int i = 0;
+      for (String k : d)
+        u.append ("      ").append (format (w.get (i), "(" + e.get (i++) + ") r.get (" + k + ")")).append (";\n");
+      step (c, u.append ("    })").toString ());
+    } else for (int i = 0; i < r.size (); i++)
+      step (c, "c.<" + e.get (i) + "> resolve (" + r.get (i) + ").thenAccept (y -> " + format (w.get (i), "y") + ")");
+
+    String q = j.getQualifiedName ().toString ();
+    try (Writer o = processingEnv.getFiler ().createSourceFile (p.isEmpty () ? n : p + "." + n, j).openWriter ()) {
+      if (!p.isEmpty ()) o.write ("package " + p + ";\n\n");
+      o.write ("/**\n * Batch executor for {@link " + q + "}\n */\n");
+      o.write ("@javax.annotation.processing.Generated (\"" + getClass ().getName () + "\")\n");
+      o.write ("public final class " + n + " implements us.levk.rserve.client.batch.BatchExecutor <" + q + "> {\n\n");
+      o.write (f.stream ().collect (joining ()));
+      o.write ("\n  @java.lang.Override\n  @java.lang.SuppressWarnings (\"unchecked\")\n");
+      o.write ("  public java.util.concurrent.CompletableFuture <" + q + "> execute (us.levk.rserve.client.Client c, " + q
+               + " j) {\n");
+      o.write ("    java.util.concurrent.CompletableFuture <java.lang.Void> v = java.util.concurrent.CompletableFuture.completedFuture (null);\n");
+      o.write (c.toString ());
+      o.write ("    return v.thenApply (x -> j);\n  }\n}\n");
+    }
+  }
+
+  /**
+   * @param t
+   *          root
+   * @return all superclasses and implemented interfaces in descending order,
+   *         as {@link us.levk.rserve.client.tools.reflect.Classes#base(Class)}
+   */
+  private static List <TypeElement> base (TypeMirror t) {
+    List <TypeElement> r = new ArrayList <> ();
+    if (t.getKind () == DECLARED) {
+      TypeElement e = (TypeElement) ((DeclaredType) t).asElement ();
+      r.addAll (base (e.getSuperclass ()));
+      for (TypeMirror i : e.getInterfaces ())
+        r.addAll (base (i));
+      r.add (e);
+    }
+    return r;
+  }
+
+  /**
+   * @param t
+   *          declaring type
+   * @param a
+   *          annotation
+   * @param p
+   *          job package
+   * @return annotated fields followed by annotated methods
+   * @throws Unsupported
+   *           if any is not accessible from the job package
+   */
+  private List <Element> members (TypeElement t, Class <? extends Annotation> a, String p) throws Unsupported {
+    List <Element> r = new ArrayList <> ();
+    for (Element e : t.getEnclosedElements ())
+      if (e.getKind () == FIELD && e.getAnnotation (a) != null) r.add (e);
+    for (Element e : t.getEnclosedElements ())
+      if (e.getKind () == METHOD && e.getAnnotation (a) != null) r.add (e);
+    for (Element e : r)
+      if (e.getModifiers ().contains (PRIVATE) || (!e.getModifiers ().contains (PUBLIC)
+                                                   && !processingEnv.getElementUtils ().getPackageOf (t).getQualifiedName ().contentEquals (p)))
+        throw new Unsupported (t + "." + e + " is not accessible from " + p);
+    return r;
+  }
+
+  /**
+   * @param c
+   *          code
+   * @param s
+   *          step submission expression
+   */
+  private static void step (StringBuilder c, String s) {
+    c.append ("    v = us.levk.rserve.client.batch.BatchExecutor.step (c, v, () -> ").append (s).append (");\n");
+  }
+
+  /**
+   * @param m
+   *          field or getter method
+   * @return expression of the member value
+   * @throws Unsupported
+   *           if the method takes arguments or returns nothing
+   */
+  private static String get (Element m) throws Unsupported {
+    if (m.getKind () == METHOD && (!((ExecutableElement) m).getParameters ().isEmpty ()
+                                   || ((ExecutableElement) m).getReturnType ().getKind () == VOID))
+      throw new Unsupported (m.getEnclosingElement () + "." + m + " is not a getter");
+    return "j." + m.getSimpleName () + (m.getKind () == METHOD ? " ()" : "");
+  }
+
+  /**
+   * @param v
+   *          annotated name
+   * @param m
+   *          member
+   * @return annotated name or member name if blank
+   */
+  private static String name (String v, Element m) {
+    return v.equals ("") ? m.getSimpleName ().toString () : v;
+  }
+
+  /**
+   * @param t
+   *          type
+   * @return whether the type refers to type variables
+   */
+  private static boolean variable (TypeMirror t) {
+    if (t == null) return false;
+    else if (t.getKind () == TYPEVAR) return true;
+    else if (t.getKind () == ARRAY) return variable (((ArrayType) t).getComponentType ());
+    else if (t.getKind () == WILDCARD)
+      return variable (((WildcardType) t).getExtendsBound ()) || variable (((WildcardType) t).getSuperBound ());
+    else if (t.getKind () == DECLARED)
+      return variable (((DeclaredType) t).getEnclosingType ())
+             || ((DeclaredType) t).getTypeArguments ().stream ().anyMatch (BatchProcessor::variable);
+    else return false;
+  }
+
+  /**
+   * @param t
+   *          type
+   * @return expression of the reflected type
+   */
+  private String type (TypeMirror t) {
+    String e = processingEnv.getTypeUtils ().erasure (t).toString ();
+    return e.equals (t.toString ()) ? e + ".class"
+                                    : "new com.fasterxml.jackson.core.type.TypeReference <" + t + "> () {}.getType ()";
+  }
+
+  /**
+   * @param t
+   *          type
+   * @return type name, boxed if primitive
+   */
+  private String boxed (TypeMirror t) {
+    return t.getKind ().isPrimitive () ? processingEnv.getTypeUtils ().boxedClass ((PrimitiveType) t).getQualifiedName ().toString ()
+                                       : t.toString ();
+  }
+
+  /**
+   * @param s
+   *          text
+   * @return string expression, split over several literals if long
+   */
+  private String literal (String s) {
+    Function <String, String> l = processingEnv.getElementUtils ()::getConstantExpression;
+    if (s.length () <= LITERAL_LENGTH) return l.apply (s);
+    List <String> r = new ArrayList <> ();
+    for (int i = 0, k; i < s.length (); i = k) {
+      k = min (i + LITERAL_LENGTH, s.length ());
+      if (k < s.length () && Character.isHighSurrogate (s.charAt (k - 1))) k--;
+      r.add (l.apply (s.substring (i, k)));
+    }
+    return "java.lang.String.join (\"\", " + String.join (", ", r) + ")";
+  }
+
+  /**
+   * @param j
+   *          job type
+   * @param p
+   *          job package
+   * @param r
+   *          resource path relative to the job type
+   * @return script text as read by {@link BatchPlan}
+   * @throws Unsupported
+   *           if the script can't be found
+   */
+  private String script (TypeElement j, String p, String r) throws Unsupported {
+    String k = r.startsWith ("/") ? "" : p;
+    String n = r.startsWith ("/") ? r.substring (1) : r;
+    for (Location l : new Location[] { CLASS_OUTPUT, SOURCE_PATH, CLASS_PATH })
+      try (Reader i = new InputStreamReader (processingEnv.getFiler ().getResource (l, k, n).openInputStream ())) {
+        return new BufferedReader (i).lines ().collect (joining ("\n"));
+      } catch (IOException | IllegalArgumentException e) {}
+    throw new Unsupported (format ("script %s of %s not found", r, j));
+  }
+}
@@ -0,0 +1,524 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.lang.reflect.Modifier.isStatic;
+import static java.lang.reflect.Modifier.isTransient;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.stream.Collectors.toList;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.expression;
+import static us.levk.rserve.client.protocol.Expressions.next;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_BOOL;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_DOUBLE;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_STR;
+import static us.levk.rserve.client.protocol.Qap.XT_VECTOR;
+import static us.levk.rserve.client.protocol.Vectors.NA_INTEGER;
+import static us.levk.rserve.client.protocol.Vectors.NA_INTEGER64;
+import static us.levk.rserve.client.protocol.Vectors.NA_REAL;
+import static us.levk.rserve.client.tools.reflect.Classes.base;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+
+import us.levk.rserve.client.protocol.Expression;
+import us.levk.rserve.client.protocol.StringDictionary;
+import us.levk.rserve.client.protocol.Vectors;
+
+/**
+ * Data frame stored by column, each column a {@code double[]},
+ * {@code int[]}, {@code long[]}, {@code boolean[]}, {@code Boolean[]},
+ * {@code String[]} or {@link Factor}. Assigned as a list of atomic vectors
+ * with names, compact row.names and class attributes, columns written
+ * straight from the arrays; {@code long} columns are sent as integer64 of the
+ * bit64 package so no value loses precision, boxed nulls as its NA. Resolved
+ * frames hold one array per column copied out of the response: numeric
+ * columns as {@code double[]}, integer64 columns as {@code long[]}, integer
+ * columns as {@code int[]}, logical columns as {@code Boolean[]} with NA as
+ * null, character columns as {@code String[]} and factors as {@link Factor};
+ * row names are not kept
+ * 
+ * @author levk
+ */
+public class DataFrame implements Expression {
+
+  /**
+   * Column extractors by row type
+   */
+  private static final ClassValue <Map <String, Extractor>> EXTRACTORS = new ClassValue <Map <String, Extractor>> () {
+    @Override
+    protected Map <String, Extractor> computeValue (Class <?> t) {
+      return extractors (t);
+    }
+  };
+
+  /**
+   * Extracts a column out of rows
+   * 
+   * @author levk
+   */
+  @FunctionalInterface
+  private static interface Extractor {
+    /**
+     * @param r
+     *          rows
+     * @return column
+     * @throws Throwable
+     *           on access failure
+     */
+    Object extract (List <?> r) throws Throwable;
+  }
+
+  /**
+   * Column names
+   */
+  private final String[] names;
+  /**
+   * Columns
+   */
+  private final Object[] columns;
+  /**
+   * Rows
+   */
+  private final int rows;
+
+  /**
+   * @param c
+   *          columns by name in order, arrays are shared
+   */
+  public DataFrame (Map <String, ?> c) {
+    names = c.keySet ().toArray (new String[0]);
+    columns = c.values ().toArray ();
+    int r = -1;
+    for (int i = 0; i < columns.length; i++) {
+      int l = length (columns[i]);
+      if (l < 0) throw new IllegalArgumentException ("Unsupported column " + names[i]);
+      else if (r >= 0 && l != r) throw new IllegalArgumentException ("Expected " + r + " rows in column " + names[i] + " but got " + l);
+      r = l;
+    }
+    rows = r < 0 ? 0 : r;
+  }
+
+  /**
+   * @param r
+   *          rows
+   * @param t
+   *          row type, record components or instance fields become columns in
+   *          declaration order
+   * @param <T>
+   *          row type
+   * @return data frame of the rows
+   */
+  public static <T> DataFrame of (Iterable <? extends T> r, Class <T> t) {
+    List <?> l;
+    if (r instanceof List) l = (List <?>) r;
+    else {
+      List <T> a = new ArrayList <> ();
+      r.forEach (a::add);
+      l = a;
+    }
+    Map <String, Object> c = new LinkedHashMap <> ();
+    try {
+      for (Entry <String, Extractor> e : EXTRACTORS.get (t).entrySet ())
+        c.put (e.getKey (), e.getValue ().extract (l));
+    } catch (RuntimeException | Error x) {
+      throw x;
+    } catch (Throwable x) {
+      throw new IllegalStateException (x);
+    }
+    return new DataFrame (c);
+  }
+
+  /**
+   * @return rows
+   */
+  public int rows () {
+    return rows;
+  }
+
+  /**
+   * @return column names
+   */
+  public List <String> names () {
+    return unmodifiableList (Arrays.asList (names));
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return column array or null if there is no such column
+   */
+  public Object column (String n) {
+    for (int i = 0; i < names.length; i++)
+      if (names[i].equals (n)) return columns[i];
+    return null;
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return numeric column
+   */
+  public double[] doubles (String n) {
+    return column (n, double[].class);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return integer column
+   */
+  public int[] integers (String n) {
+    return column (n, int[].class);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return integer64 column, NA as {@link Vectors#NA_INTEGER64}
+   */
+  public long[] longs (String n) {
+    return column (n, long[].class);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return character column
+   */
+  public String[] strings (String n) {
+    return column (n, String[].class);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return logical column, NA as null
+   */
+  public Boolean[] logicals (String n) {
+    Object c = column (n);
+    if (c instanceof boolean[]) {
+      boolean[] b = (boolean[]) c;
+      Boolean[] l = new Boolean[b.length];
+      for (int i = 0; i < b.length; i++)
+        l[i] = b[i];
+      return l;
+    } else return column (n, Boolean[].class);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @return factor column
+   */
+  public Factor factor (String n) {
+    return column (n, Factor.class);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @param t
+   *          column type
+   * @param <C>
+   *          column type
+   * @return column
+   */
+  private <C> C column (String n, Class <C> t) {
+    Object c = column (n);
+    if (t.isInstance (c)) return t.cast (c);
+    else throw new IllegalArgumentException ("Column " + n + (c == null ? " not found" : " is not " + t.getSimpleName ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.Expression#encode()
+   */
+  @Override
+  public Stream <ByteBuffer> encode () {
+    try {
+      List <ByteBuffer> e = new ArrayList <> ();
+      for (Object c : columns)
+        if (c instanceof Factor) ((Factor) c).encode ().forEach (e::add);
+        else if (c instanceof long[]) Vectors.integer64 ((long[]) c).forEach (e::add);
+        else if (c instanceof Boolean[]) e.addAll (Vectors.logicals ((Boolean[]) c, Vectors.SEGMENT_SIZE));
+        else e.addAll (Vectors.encode (c));
+      Map <String, List <ByteBuffer>> a = new LinkedHashMap <> ();
+      a.put ("names", singletonList (Vectors.strings (names)));
+      a.put ("row.names", singletonList (Vectors.integers (new int[] { NA_INTEGER, -rows })));
+      a.put ("class", singletonList (Vectors.strings (new String[] { "data.frame" })));
+      return expression (XT_VECTOR, a, e);
+    } catch (ArithmeticException | IOException x) {
+      throw new IllegalStateException ("Data frame of " + rows + " rows is too large", x);
+    }
+  }
+
+  /**
+   * @param e
+   *          expression of a data frame
+   * @return data frame with columns copied out of the expression
+   * @throws IOException
+   *           if the expression is not a data frame or holds an unsupported
+   *           column
+   */
+  public static DataFrame decode (ByteBuffer e) throws IOException {
+    return decode (e, null);
+  }
+
+  /**
+   * @param e
+   *          expression of a data frame
+   * @param d
+   *          dictionary strings of character columns are shared through, null
+   *          to decode each anew
+   * @return data frame with columns copied out of the expression
+   * @throws IOException
+   *           if the expression is not a data frame or holds an unsupported
+   *           column
+   */
+  public static DataFrame decode (ByteBuffer e, StringDictionary d) throws IOException {
+    ByteBuffer k = type (e) == XT_VECTOR ? attribute (e, "class") : null;
+    if (k == null || type (k) != XT_ARRAY_STR || !Arrays.asList (Vectors.strings (content (k))).contains ("data.frame"))
+      throw new IOException ("Expected a data frame");
+    ByteBuffer n = attribute (e, "names");
+    String[] h = n == null || type (n) != XT_ARRAY_STR ? new String[0] : Vectors.strings (content (n));
+    Map <String, Object> c = new LinkedHashMap <> ();
+    ByteBuffer b = content (e);
+    for (int i = 0; b.hasRemaining (); i++) {
+      ByteBuffer v = next (b);
+      String m = i < h.length && h[i] != null ? h[i] : "V" + (i + 1);
+      if (type (v) == XT_ARRAY_INT && attribute (v, "levels") != null) c.put (m, Factor.decode (v));
+      else if (type (v) == XT_ARRAY_DOUBLE && Vectors.integer64 (v)) c.put (m, copy (content (v).asLongBuffer ()));
+      else if (type (v) == XT_ARRAY_DOUBLE) c.put (m, copy (content (v).asDoubleBuffer ()));
+      else if (type (v) == XT_ARRAY_INT) c.put (m, copy (content (v).asIntBuffer ()));
+      else if (type (v) == XT_ARRAY_STR) c.put (m, Vectors.strings (content (v), d));
+      else if (type (v) == XT_ARRAY_BOOL) c.put (m, Vectors.logicals (content (v)));
+      else throw new IOException ("Unsupported type " + type (v) + " of column " + m);
+    }
+    try {
+      return new DataFrame (c);
+    } catch (IllegalArgumentException x) {
+      throw new IOException (x.getMessage (), x);
+    }
+  }
+
+  /**
+   * @param b
+   *          values
+   * @return copy of the values
+   */
+  private static double[] copy (DoubleBuffer b) {
+    double[] v = new double[b.remaining ()];
+    b.get (v);
+    return v;
+  }
+
+  /**
+   * @param b
+   *          values
+   * @return copy of the values
+   */
+  private static long[] copy (LongBuffer b) {
+    long[] v = new long[b.remaining ()];
+    b.get (v);
+    return v;
+  }
+
+  /**
+   * @param b
+   *          values
+   * @return copy of the values
+   */
+  private static int[] copy (IntBuffer b) {
+    int[] v = new int[b.remaining ()];
+    b.get (v);
+    return v;
+  }
+
+  /**
+   * @param c
+   *          column
+   * @return length or -1 if the column is not of a supported type
+   */
+  private static int length (Object c) {
+    if (c instanceof double[]) return ((double[]) c).length;
+    else if (c instanceof int[]) return ((int[]) c).length;
+    else if (c instanceof long[]) return ((long[]) c).length;
+    else if (c instanceof boolean[]) return ((boolean[]) c).length;
+    else if (c instanceof Boolean[] || c instanceof String[]) return ((Object[]) c).length;
+    else if (c instanceof Factor) return ((Factor) c).size ();
+    else return -1;
+  }
+
+  /**
+   * @param t
+   *          row type
+   * @return instance fields in declaration order, supertypes first
+   */
+  private static List <Field> fields (Class <?> t) {
+    return base (t).flatMap (c -> Stream.of (c.getDeclaredFields ()))
+                   .filter (f -> !isStatic (f.getModifiers ()) && !isTransient (f.getModifiers ()) && !f.isSynthetic ())
+                   .collect (toList ());
+  }
+
+  /**
+   * @param t
+   *          row type
+   * @return column extractors by name in order
+   */
+  private static Map <String, Extractor> extractors (Class <?> t) {
+    Map <String, Extractor> e = new LinkedHashMap <> ();
+    try {
+      if (t.isRecord ()) for (RecordComponent c : t.getRecordComponents ()) {
+        c.getAccessor ().setAccessible (true);
+        e.put (c.getName (), extractor (c.getName (), c.getType (), lookup ().unreflect (c.getAccessor ())));
+      }
+      else for (Field f : fields (t)) {
+        f.setAccessible (true);
+        e.put (f.getName (), extractor (f.getName (), f.getType (), lookup ().unreflectGetter (f)));
+      }
+    } catch (IllegalAccessException | RuntimeException x) {
+      throw new IllegalArgumentException ("Unable to access columns of " + t.getName (), x);
+    }
+    return unmodifiableMap (e);
+  }
+
+  /**
+   * @param n
+   *          column name
+   * @param c
+   *          member type
+   * @param g
+   *          getter
+   * @return extractor of the column
+   */
+  private static Extractor extractor (String n, Class <?> c, MethodHandle g) {
+    if (c == long.class) {
+      MethodHandle h = g.asType (methodType (long.class, Object.class));
+      return r -> {
+        long[] v = new long[r.size ()];
+        for (int i = 0; i < v.length; i++)
+          v[i] = (long) h.invokeExact ((Object) r.get (i));
+        return v;
+      };
+    } else if (c == double.class || c == float.class) {
+      MethodHandle h = g.asType (methodType (double.class, Object.class));
+      return r -> {
+        double[] v = new double[r.size ()];
+        for (int i = 0; i < v.length; i++)
+          v[i] = (double) h.invokeExact ((Object) r.get (i));
+        return v;
+      };
+    } else if (c == int.class || c == short.class || c == byte.class) {
+      MethodHandle h = g.asType (methodType (int.class, Object.class));
+      return r -> {
+        int[] v = new int[r.size ()];
+        for (int i = 0; i < v.length; i++)
+          v[i] = (int) h.invokeExact ((Object) r.get (i));
+        return v;
+      };
+    } else if (c == boolean.class) {
+      MethodHandle h = g.asType (methodType (boolean.class, Object.class));
+      return r -> {
+        boolean[] v = new boolean[r.size ()];
+        for (int i = 0; i < v.length; i++)
+          v[i] = (boolean) h.invokeExact ((Object) r.get (i));
+        return v;
+      };
+    }
+    MethodHandle h = g.asType (methodType (Object.class, Object.class));
+    if (c == Long.class) return r -> {
+      long[] v = new long[r.size ()];
+      for (int i = 0; i < v.length; i++) {
+        Long x = (Long) (Object) h.invokeExact ((Object) r.get (i));
+        v[i] = x == null ? NA_INTEGER64 : x;
+      }
+      return v;
+    };
+    else if (c == Double.class || c == Float.class) return r -> {
+      double[] v = new double[r.size ()];
+      for (int i = 0; i < v.length; i++) {
+        Number x = (Number) (Object) h.invokeExact ((Object) r.get (i));
+        v[i] = x == null ? NA_REAL : x.doubleValue ();
+      }
+      return v;
+    };
+    else if (c == Integer.class || c == Short.class || c == Byte.class) return r -> {
+      int[] v = new int[r.size ()];
+      for (int i = 0; i < v.length; i++) {
+        Number x = (Number) (Object) h.invokeExact ((Object) r.get (i));
+        v[i] = x == null ? NA_INTEGER : x.intValue ();
+      }
+      return v;
+    };
+    else if (c == Boolean.class) return r -> {
+      Boolean[] v = new Boolean[r.size ()];
+      for (int i = 0; i < v.length; i++)
+        v[i] = (Boolean) (Object) h.invokeExact ((Object) r.get (i));
+      return v;
+    };
+    else if (c == char.class || CharSequence.class.isAssignableFrom (c) || c == Character.class || c.isEnum ()) return r -> {
+      String[] v = new String[r.size ()];
+      for (int i = 0; i < v.length; i++) {
+        Object x = (Object) h.invokeExact ((Object) r.get (i));
+        v[i] = x == null ? null : x instanceof Enum ? ((Enum <?>) x).name () : x.toString ();
+      }
+      return v;
+    };
+    else throw new IllegalArgumentException ("Unsupported type " + c.getName () + " of column " + n);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "DataFrame{" + rows + "x" + Arrays.toString (names) + "}";
+  }
+}
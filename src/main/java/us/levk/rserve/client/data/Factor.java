@@ -0,0 +1,184 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.util.Collections.singletonList;
+import static java.util.Objects.checkIndex;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.expression;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_STR;
+import static us.levk.rserve.client.protocol.Vectors.NA_INTEGER;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import us.levk.rserve.client.protocol.Expression;
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Vectors;
+
+/**
+ * Dictionary encoded strings, a shared array of levels and one integer code
+ * per value: one based indices into the levels, NA as the R integer NA.
+ * Exchanged with R as a factor
+ * 
+ * @author levk
+ */
+public class Factor implements Expression {
+
+  /**
+   * Levels
+   */
+  private final String[] levels;
+  /**
+   * Codes
+   */
+  private final int[] codes;
+
+  /**
+   * @param l
+   *          levels, shared
+   * @param c
+   *          one based codes, shared
+   */
+  public Factor (String[] l, int[] c) {
+    for (int v : c)
+      if (v != NA_INTEGER && (v < 1 || v > l.length)) throw new IllegalArgumentException ("Code " + v + " is out of " + l.length + " levels");
+    levels = l;
+    codes = c;
+  }
+
+  /**
+   * @param v
+   *          values, null elements are NA
+   * @return factor with levels in order of first appearance
+   */
+  public static Factor of (String[] v) {
+    Map <String, Integer> d = new HashMap <> ();
+    int[] c = new int[v.length];
+    for (int i = 0; i < v.length; i++)
+      c[i] = v[i] == null ? NA_INTEGER : d.computeIfAbsent (v[i], k -> d.size () + 1);
+    String[] l = new String[d.size ()];
+    d.forEach ( (k, i) -> l[i - 1] = k);
+    return new Factor (l, c);
+  }
+
+  /**
+   * @return levels
+   */
+  public String[] levels () {
+    return levels;
+  }
+
+  /**
+   * @return one based codes
+   */
+  public int[] codes () {
+    return codes;
+  }
+
+  /**
+   * @return number of values
+   */
+  public int size () {
+    return codes.length;
+  }
+
+  /**
+   * @param i
+   *          index
+   * @return level of the value, null if NA
+   */
+  public String get (int i) {
+    int c = codes[checkIndex (i, codes.length)];
+    return c == NA_INTEGER ? null : levels[c - 1];
+  }
+
+  /**
+   * @return level of each value, null if NA, equal values share the level
+   *         instance
+   */
+  public String[] labels () {
+    String[] l = new String[codes.length];
+    for (int i = 0; i < l.length; i++)
+      l[i] = codes[i] == NA_INTEGER ? null : levels[codes[i] - 1];
+    return l;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.Expression#encode()
+   */
+  @Override
+  public Stream <ByteBuffer> encode () {
+    try {
+      Map <String, List <ByteBuffer>> a = new LinkedHashMap <> ();
+      a.put ("levels", singletonList (Vectors.strings (levels)));
+      a.put ("class", singletonList (Vectors.strings (new String[] { "factor" })));
+      ByteBuffer c = Vectors.integers (codes);
+      return expression (XT_ARRAY_INT, a, singletonList (c.position (Expressions.header (c))));
+    } catch (ArithmeticException x) {
+      throw new IllegalStateException ("Factor of " + codes.length + " values is too large", x);
+    }
+  }
+
+  /**
+   * @param e
+   *          expression of a factor
+   * @return factor copied out of the expression
+   * @throws IOException
+   *           if the expression is not a factor
+   */
+  public static Factor decode (ByteBuffer e) throws IOException {
+    ByteBuffer l = type (e) == XT_ARRAY_INT ? attribute (e, "levels") : null;
+    if (l == null || type (l) != XT_ARRAY_STR) throw new IOException ("Expected a factor");
+    int[] c = new int[content (e).remaining () / Integer.BYTES];
+    content (e).asIntBuffer ().get (c);
+    try {
+      return new Factor (Vectors.strings (content (l)), c);
+    } catch (IllegalArgumentException x) {
+      throw new IOException (x.getMessage (), x);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "Factor{" + codes.length + ":" + levels.length + "}";
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.util.Objects.checkIndex;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.next;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_DOUBLE;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_STR;
+import static us.levk.rserve.client.protocol.Qap.XT_VECTOR;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Vectors;
+
+/**
+ * View over an encoded expression decoding only what is accessed, the
+ * response buffer is retained as is. Offsets of list elements and of
+ * character vector elements are indexed once on first access, elements of
+ * numeric vectors are read in place. Not safe for concurrent first access
+ * 
+ * @author levk
+ */
+public class LazySexp {
+
+  /**
+   * Expression
+   */
+  private final ByteBuffer expression;
+  /**
+   * Content
+   */
+  private final ByteBuffer content;
+  /**
+   * Element offsets into the content, indexed on first access
+   */
+  private int[] offsets;
+  /**
+   * Element names, read on first access
+   */
+  private String[] names;
+
+  /**
+   * @param e
+   *          expression, shared
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  private LazySexp (ByteBuffer e) throws IOException {
+    expression = next (e.duplicate ());
+    content = content (expression);
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return lazy view over the expression
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  public static LazySexp decode (ByteBuffer e) throws IOException {
+    return new LazySexp (e);
+  }
+
+  /**
+   * @return expression type without flags
+   */
+  public int type () {
+    return Expressions.type (expression);
+  }
+
+  /**
+   * @return number of elements
+   */
+  public int size () {
+    switch (type ()) {
+      case XT_ARRAY_DOUBLE:
+        return content.remaining () / Double.BYTES;
+      case XT_ARRAY_INT:
+        return content.remaining () / Integer.BYTES;
+      case XT_VECTOR:
+      case XT_ARRAY_STR:
+        return offsets ().length - 1;
+      default:
+        return 1;
+    }
+  }
+
+  /**
+   * @param i
+   *          index
+   * @return element of a list
+   */
+  public LazySexp get (int i) {
+    if (type () != XT_VECTOR) throw new IllegalStateException ("Not a list");
+    int[] o = offsets ();
+    checkIndex (i, o.length - 1);
+    try {
+      return new LazySexp (content.duplicate ().position (o[i]).limit (o[i + 1]));
+    } catch (IOException e) {
+      throw new UncheckedIOException (e);
+    }
+  }
+
+  /**
+   * @param n
+   *          name
+   * @return first element of a list by the name, null if absent
+   */
+  public LazySexp get (String n) {
+    String[] m = names ();
+    for (int i = 0; i < m.length; i++)
+      if (n.equals (m[i])) return get (i);
+    return null;
+  }
+
+  /**
+   * @return element names, empty if none
+   */
+  public String[] names () {
+    if (names == null) try {
+      ByteBuffer n = attribute (expression, "names");
+      names = n == null || Expressions.type (n) != XT_ARRAY_STR ? new String[0] : Vectors.strings (content (n));
+    } catch (IOException e) {
+      throw new UncheckedIOException (e);
+    }
+    return names;
+  }
+
+  /**
+   * @param i
+   *          index
+   * @return element of a numeric vector
+   */
+  public double getDouble (int i) {
+    if (type () != XT_ARRAY_DOUBLE) throw new IllegalStateException ("Not a numeric vector");
+    return content.getDouble (content.position () + checkIndex (i, size ()) * Double.BYTES);
+  }
+
+  /**
+   * @param i
+   *          index
+   * @return element of an integer vector
+   */
+  public int getInt (int i) {
+    if (type () != XT_ARRAY_INT) throw new IllegalStateException ("Not an integer vector");
+    return content.getInt (content.position () + checkIndex (i, size ()) * Integer.BYTES);
+  }
+
+  /**
+   * @param i
+   *          index
+   * @return element of a character vector, null if NA
+   */
+  public String getString (int i) {
+    if (type () != XT_ARRAY_STR) throw new IllegalStateException ("Not a character vector");
+    int[] o = offsets ();
+    checkIndex (i, o.length - 1);
+    return Vectors.strings (content.duplicate ().position (o[i]).limit (o[i + 1]))[0];
+  }
+
+  /**
+   * @param t
+   *          target type supported by direct decoding
+   * @return the whole expression decoded to the target type
+   * @throws IOException
+   *           if the expression can not be decoded to the type
+   */
+  public Object as (Type t) throws IOException {
+    Object v = Vectors.decode (expression.duplicate (), t);
+    if (v == null) throw new IOException ("Unable to decode " + type () + " as " + t);
+    return v;
+  }
+
+  /**
+   * @return element offsets followed by the content limit
+   */
+  private int[] offsets () {
+    if (offsets == null) {
+      List <Integer> o = new ArrayList <> ();
+      ByteBuffer b = content.duplicate ();
+      try {
+        if (type () == XT_VECTOR) while (b.hasRemaining ()) {
+          o.add (b.position ());
+          next (b);
+        }
+        else for (int p = b.position (), i = p; i < b.limit (); i++)
+          if (b.get (i) == 0) {
+            o.add (p);
+            p = i + 1;
+          }
+      } catch (IOException e) {
+        throw new UncheckedIOException (e);
+      }
+      int[] r = new int[o.size () + 1];
+      for (int i = 0; i < o.size (); i++)
+        r[i] = o.get (i);
+      r[o.size ()] = b.limit ();
+      offsets = r;
+    }
+    return offsets;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "LazySexp{" + type () + ":" + expression.remaining () + "}";
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.multiplyExact;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Objects.checkIndex;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_DOUBLE;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Qap.XT_HAS_ATTR;
+import static us.levk.rserve.client.protocol.Qap.XT_LIST_TAG;
+import static us.levk.rserve.client.protocol.Qap.XT_SYMNAME;
+import static us.levk.rserve.client.protocol.Qap.header;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.stream.Stream;
+
+import us.levk.rserve.client.protocol.Expression;
+
+/**
+ * Double matrix stored column major in little endian buffers, off heap
+ * unless constructed over an existing buffer. Matrices over a gigabyte are
+ * split into segments of whole columns so none of the buffers has to exceed
+ * the limits of a single one. Assigned as a numeric vector with a dim
+ * attribute straight from the buffers, and resolved as a view over the
+ * response
+ * 
+ * @author levk
+ */
+public class RMatrix implements Expression {
+
+  /**
+   * Length of the encoded dim attribute
+   */
+  private static final int DIM_LENGTH = 24;
+  /**
+   * Largest segment size in bytes
+   */
+  static final int SEGMENT_SIZE = 1 << 30;
+
+  /**
+   * Rows
+   */
+  private final int rows;
+  /**
+   * Columns
+   */
+  private final int columns;
+  /**
+   * Columns per segment
+   */
+  private final int span;
+  /**
+   * Values in column major order by segment
+   */
+  private final ByteBuffer[] data;
+
+  /**
+   * @param r
+   *          rows
+   * @param c
+   *          columns
+   */
+  public RMatrix (int r, int c) {
+    this (r, c, SEGMENT_SIZE);
+  }
+
+  /**
+   * @param r
+   *          rows
+   * @param c
+   *          columns
+   * @param s
+   *          largest segment size in bytes
+   */
+  RMatrix (int r, int c, int s) {
+    if (r < 0 || c < 0) throw new IllegalArgumentException ("Negative dimensions " + r + "x" + c);
+    if (r > Integer.MAX_VALUE / Double.BYTES) throw new IllegalArgumentException ("Column of " + r + " rows is too large");
+    rows = r;
+    columns = c;
+    span = r == 0 ? max (c, 1) : max (1, s / (r * Double.BYTES));
+    data = new ByteBuffer[c == 0 ? 0 : (c - 1) / span + 1];
+    for (int i = 0; i < data.length; i++)
+      data[i] = allocateDirect (min (span, c - i * span) * r * Double.BYTES).order (LITTLE_ENDIAN);
+  }
+
+  /**
+   * @param r
+   *          rows
+   * @param c
+   *          columns
+   * @param d
+   *          values in column major order, little endian doubles between the
+   *          position and the limit, shared
+   */
+  public RMatrix (int r, int c, ByteBuffer d) {
+    if (d.remaining () != size (r, c))
+      throw new IllegalArgumentException ("Expected " + size (r, c) + " bytes for " + r + "x" + c + " but got " + d.remaining ());
+    rows = r;
+    columns = c;
+    span = max (c, 1);
+    data = new ByteBuffer[] { d.slice ().order (LITTLE_ENDIAN) };
+  }
+
+  /**
+   * @param v
+   *          values by row
+   * @return off heap matrix with the values
+   */
+  public static RMatrix of (double[][] v) {
+    RMatrix m = new RMatrix (v.length, v.length == 0 ? 0 : v[0].length);
+    for (int i = 0; i < m.rows; i++)
+      if (v[i].length != m.columns) throw new IllegalArgumentException ("Ragged row " + i);
+      else for (int j = 0; j < m.columns; j++)
+        m.set (i, j, v[i][j]);
+    return m;
+  }
+
+  /**
+   * @param r
+   *          rows
+   * @param c
+   *          columns
+   * @return size in bytes of a matrix in a single buffer
+   */
+  private static int size (int r, int c) {
+    if (r < 0 || c < 0) throw new IllegalArgumentException ("Negative dimensions " + r + "x" + c);
+    try {
+      return multiplyExact (multiplyExact (r, c), Double.BYTES);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException ("Matrix of " + r + "x" + c + " is too large");
+    }
+  }
+
+  /**
+   * @return rows
+   */
+  public int rows () {
+    return rows;
+  }
+
+  /**
+   * @return columns
+   */
+  public int columns () {
+    return columns;
+  }
+
+  /**
+   * @param i
+   *          row
+   * @param j
+   *          column
+   * @return value
+   */
+  public double get (int i, int j) {
+    return data[j / span].getDouble (index (i, j));
+  }
+
+  /**
+   * @param i
+   *          row
+   * @param j
+   *          column
+   * @param v
+   *          value
+   * @return this
+   */
+  public RMatrix set (int i, int j, double v) {
+    data[j / span].putDouble (index (i, j), v);
+    return this;
+  }
+
+  /**
+   * @param j
+   *          column
+   * @return view of the column
+   */
+  public DoubleBuffer column (int j) {
+    int k = checkIndex (j, columns) % span;
+    return data[j / span].duplicate ().position (k * rows * Double.BYTES).limit ((k + 1) * rows * Double.BYTES).slice ()
+                         .order (LITTLE_ENDIAN).asDoubleBuffer ();
+  }
+
+  /**
+   * @return view of all values in column major order
+   * @throws IllegalStateException
+   *           if the matrix is split in segments
+   */
+  public DoubleBuffer values () {
+    if (data.length > 1) throw new IllegalStateException ("Matrix is split in " + data.length + " segments");
+    return data.length == 0 ? DoubleBuffer.allocate (0) : data[0].duplicate ().order (LITTLE_ENDIAN).asDoubleBuffer ();
+  }
+
+  /**
+   * @return number of segments
+   */
+  public int segments () {
+    return data.length;
+  }
+
+  /**
+   * @param i
+   *          row
+   * @param j
+   *          column
+   * @return byte offset of the value within its segment
+   */
+  private int index (int i, int j) {
+    return (checkIndex (j, columns) % span * rows + checkIndex (i, rows)) * Double.BYTES;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.Expression#encode()
+   */
+  @Override
+  public Stream <ByteBuffer> encode () {
+    ByteBuffer a = allocate (DIM_LENGTH).order (LITTLE_ENDIAN).putInt (XT_LIST_TAG | (DIM_LENGTH - 4) << 8)
+                                        .putInt (XT_ARRAY_INT | 8 << 8).putInt (rows).putInt (columns)
+                                        .putInt (XT_SYMNAME | 4 << 8).put ("dim\0".getBytes (US_ASCII)).flip ();
+    long s = DIM_LENGTH;
+    for (ByteBuffer d : data)
+      s += d.capacity ();
+    return Stream.concat (Stream.of (header (XT_ARRAY_DOUBLE | XT_HAS_ATTR, s), a), Stream.of (data).map (d -> d.duplicate ().clear ()));
+  }
+
+  /**
+   * @param e
+   *          expression of a numeric matrix
+   * @return matrix viewing the content of the expression
+   * @throws IOException
+   *           if the expression is not a numeric matrix
+   */
+  public static RMatrix decode (ByteBuffer e) throws IOException {
+    ByteBuffer d = type (e) == XT_ARRAY_DOUBLE ? attribute (e, "dim") : null;
+    if (d == null || type (d) != XT_ARRAY_INT || content (d).remaining () != 2 * Integer.BYTES)
+      throw new IOException ("Expected a numeric matrix");
+    ByteBuffer c = content (d);
+    try {
+      return new RMatrix (c.getInt (0), c.getInt (4), content (e));
+    } catch (IllegalArgumentException x) {
+      throw new IOException (x.getMessage (), x);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "RMatrix{" + rows + "x" + columns + "}";
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.binarySearch;
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.checkIndex;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.expression;
+import static us.levk.rserve.client.protocol.Expressions.next;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_DOUBLE;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_STR;
+import static us.levk.rserve.client.protocol.Qap.XT_VECTOR;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import us.levk.rserve.client.protocol.Expression;
+import us.levk.rserve.client.protocol.Vectors;
+
+/**
+ * Double matrix in compressed sparse column form: zero based row indices and
+ * values of the non zeros ordered by column, and per column pointers into
+ * them. Assigned as a list of the {@code i}, {@code p}, {@code x} and
+ * {@code Dim} vectors so only the non zeros travel, which the client then
+ * rebuilds into a {@code dgCMatrix} on the server with the Matrix package.
+ * Resolved from any expression carrying those slots
+ * 
+ * @author levk
+ */
+public class SparseMatrix implements Expression {
+
+  /**
+   * Rows
+   */
+  private final int rows;
+  /**
+   * Columns
+   */
+  private final int columns;
+  /**
+   * Column pointers
+   */
+  private final int[] pointers;
+  /**
+   * Row indices of the non zeros
+   */
+  private final int[] indices;
+  /**
+   * Values of the non zeros
+   */
+  private final double[] values;
+
+  /**
+   * @param r
+   *          rows
+   * @param c
+   *          columns
+   * @param p
+   *          column pointers, c + 1 of them starting at 0, shared
+   * @param i
+   *          zero based row indices of the non zeros ascending within each
+   *          column, shared
+   * @param x
+   *          values of the non zeros, shared
+   */
+  public SparseMatrix (int r, int c, int[] p, int[] i, double[] x) {
+    if (r < 0 || c < 0) throw new IllegalArgumentException ("Negative dimensions " + r + "x" + c);
+    if (p.length != c + 1 || p[0] != 0 || p[c] != i.length || i.length != x.length)
+      throw new IllegalArgumentException ("Expected " + (c + 1) + " pointers from 0 to " + i.length + " over " + x.length + " values");
+    for (int j = 0; j < c; j++)
+      if (p[j + 1] < p[j]) throw new IllegalArgumentException ("Decreasing pointer at column " + j);
+      else for (int k = p[j]; k < p[j + 1]; k++)
+        if (i[k] < 0 || i[k] >= r || (k > p[j] && i[k] <= i[k - 1]))
+          throw new IllegalArgumentException ("Row index " + i[k] + " out of order or range in column " + j);
+    rows = r;
+    columns = c;
+    pointers = p;
+    indices = i;
+    values = x;
+  }
+
+  /**
+   * @param v
+   *          values by row
+   * @return sparse matrix of the non zero values
+   */
+  public static SparseMatrix of (double[][] v) {
+    int r = v.length;
+    int c = r == 0 ? 0 : v[0].length;
+    int[] p = new int[c + 1];
+    int[] i = new int[0];
+    double[] x = new double[0];
+    for (int j = 0; j < c; j++) {
+      p[j + 1] = p[j];
+      for (int k = 0; k < r; k++)
+        if (v[k].length != c) throw new IllegalArgumentException ("Ragged row " + k);
+        else if (v[k][j] != 0) {
+          if (p[j + 1] == i.length) {
+            i = copyOf (i, i.length * 2 + 1);
+            x = copyOf (x, x.length * 2 + 1);
+          }
+          i[p[j + 1]] = k;
+          x[p[j + 1]++] = v[k][j];
+        }
+    }
+    return new SparseMatrix (r, c, p, copyOf (i, p[c]), copyOf (x, p[c]));
+  }
+
+  /**
+   * @return rows
+   */
+  public int rows () {
+    return rows;
+  }
+
+  /**
+   * @return columns
+   */
+  public int columns () {
+    return columns;
+  }
+
+  /**
+   * @return number of non zeros
+   */
+  public int size () {
+    return values.length;
+  }
+
+  /**
+   * @return column pointers
+   */
+  public int[] pointers () {
+    return pointers;
+  }
+
+  /**
+   * @return zero based row indices of the non zeros
+   */
+  public int[] indices () {
+    return indices;
+  }
+
+  /**
+   * @return values of the non zeros
+   */
+  public double[] values () {
+    return values;
+  }
+
+  /**
+   * @param i
+   *          row
+   * @param j
+   *          column
+   * @return value
+   */
+  public double get (int i, int j) {
+    checkIndex (i, rows);
+    checkIndex (j, columns);
+    int k = binarySearch (indices, pointers[j], pointers[j + 1], i);
+    return k < 0 ? 0 : values[k];
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.Expression#encode()
+   */
+  @Override
+  public Stream <ByteBuffer> encode () {
+    try {
+      return expression (XT_VECTOR, Map.of ("names", singletonList (Vectors.strings (new String[] { "i", "p", "x", "Dim" }))),
+                         asList (Vectors.integers (indices), Vectors.integers (pointers), Vectors.doubles (values),
+                                 Vectors.integers (new int[] { rows, columns })));
+    } catch (ArithmeticException x) {
+      throw new IllegalStateException ("Sparse matrix of " + values.length + " non zeros is too large", x);
+    }
+  }
+
+  /**
+   * @param n
+   *          name a sparse matrix was assigned to
+   * @return code replacing the assigned list of vectors by the
+   *         {@code dgCMatrix} they describe
+   */
+  public static String rebuild (String n) {
+    String v = "`" + n.replace ("\\", "\\\\").replace ("`", "\\`") + "`";
+    return v + " <- Matrix::sparseMatrix (i = " + v + "$i, p = " + v + "$p, x = " + v + "$x, dims = " + v
+           + "$Dim, index1 = FALSE)";
+  }
+
+  /**
+   * @param e
+   *          expression of a compressed sparse column double matrix, either an
+   *          S4 object with the slots of one or a list of its vectors as
+   *          assigned
+   * @return sparse matrix with the slots copied out of the expression
+   * @throws IOException
+   *           if the expression is not a compressed sparse column double
+   *           matrix
+   */
+  public static SparseMatrix decode (ByteBuffer e) throws IOException {
+    Map <String, ByteBuffer> s = slots (e);
+    int[] d = integers (s.get ("Dim"));
+    int[] p = integers (s.get ("p"));
+    int[] i = integers (s.get ("i"));
+    ByteBuffer x = s.get ("x");
+    if (d == null || d.length != 2 || p == null || i == null || x == null || type (x) != XT_ARRAY_DOUBLE)
+      throw new IOException ("Expected a compressed sparse column double matrix");
+    double[] v = new double[content (x).remaining () / Double.BYTES];
+    content (x).asDoubleBuffer ().get (v);
+    try {
+      return new SparseMatrix (d[0], d[1], p, i, v);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException y) {
+      throw new IOException (y.getMessage (), y);
+    }
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return slot expressions by name, the attributes of an S4 object or the
+   *         elements of a named list
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  private static Map <String, ByteBuffer> slots (ByteBuffer e) throws IOException {
+    Map <String, ByteBuffer> s = new HashMap <> ();
+    ByteBuffer n = type (e) == XT_VECTOR ? attribute (e, "names") : null;
+    if (n != null && type (n) == XT_ARRAY_STR) {
+      ByteBuffer c = content (e);
+      for (String k : Vectors.strings (content (n)))
+        if (c.hasRemaining ()) s.put (k, next (c));
+    } else for (String k : new String[] { "i", "p", "x", "Dim" })
+      s.put (k, attribute (e, k));
+    return s;
+  }
+
+  /**
+   * @param a
+   *          slot expression, may be null
+   * @return integer slot, null if absent or not an integer vector
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  private static int[] integers (ByteBuffer a) throws IOException {
+    if (a == null || type (a) != XT_ARRAY_INT) return null;
+    int[] v = new int[content (a).remaining () / Integer.BYTES];
+    content (a).asIntBuffer ().get (v);
+    return v;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "SparseMatrix{" + rows + "x" + columns + ":" + values.length + "}";
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.flow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * Writes published chunks to a channel, closing the channel when the stream
+ * ends
+ * 
+ * @author levk
+ */
+public class ChannelSubscriber implements Subscriber <ByteBuffer> {
+
+  /**
+   * Channel
+   */
+  private final WritableByteChannel channel;
+  /**
+   * Completion promise
+   */
+  private final CompletableFuture <Void> promise = new CompletableFuture <> ();
+  /**
+   * Subscription
+   */
+  private Subscription subscription;
+
+  /**
+   * @param c
+   *          channel
+   */
+  public ChannelSubscriber (WritableByteChannel c) {
+    channel = c;
+  }
+
+  /**
+   * @return promise completed once everything is written and the channel is
+   *         closed
+   */
+  public CompletableFuture <Void> promise () {
+    return promise;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * java.util.concurrent.Flow.Subscriber#onSubscribe(java.util.concurrent.Flow.
+   * Subscription)
+   */
+  @Override
+  public void onSubscribe (Subscription s) {
+    (subscription = s).request (Long.MAX_VALUE);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.util.concurrent.Flow.Subscriber#onNext(java.lang.Object)
+   */
+  @Override
+  public void onNext (ByteBuffer b) {
+    try {
+      while (b.hasRemaining ())
+        channel.write (b);
+    } catch (IOException e) {
+      subscription.cancel ();
+      onError (e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.util.concurrent.Flow.Subscriber#onError(java.lang.Throwable)
+   */
+  @Override
+  public void onError (Throwable e) {
+    try {
+      channel.close ();
+    } catch (IOException x) {
+      e.addSuppressed (x);
+    }
+    promise.completeExceptionally (e);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.util.concurrent.Flow.Subscriber#onComplete()
+   */
+  @Override
+  public void onComplete () {
+    try {
+      channel.close ();
+      promise.complete (null);
+    } catch (IOException e) {
+      promise.completeExceptionally (e);
+    }
+  }
+}
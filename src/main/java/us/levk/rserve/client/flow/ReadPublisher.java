@@ -0,0 +1,290 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.flow;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.protocol.commands.Close;
+import us.levk.rserve.client.protocol.commands.Open;
+import us.levk.rserve.client.protocol.commands.Read;
+
+/**
+ * Publishes the content of a remote file, each subscription opens the file
+ * and keeps up to a window of reads in flight as demand allows, chunks are
+ * published in file order and the file is closed on completion, error or
+ * cancellation
+ * 
+ * @author levk
+ */
+public class ReadPublisher implements Publisher <ByteBuffer> {
+
+  /**
+   * Session source
+   */
+  private final Supplier <? extends CompletableFuture <? extends Client>> sessions;
+  /**
+   * Invoked with the session once the subscription is done with it
+   */
+  private final Consumer <Client> release;
+  /**
+   * Remote file name
+   */
+  private final String name;
+  /**
+   * Read size
+   */
+  private final int size;
+  /**
+   * Maximum reads in flight
+   */
+  private final int window;
+
+  /**
+   * @param c
+   *          session
+   * @param n
+   *          remote file name
+   * @param s
+   *          read size
+   * @param w
+   *          maximum reads in flight
+   */
+  public ReadPublisher (Client c, String n, int s, int w) {
+    this ( () -> completedFuture (c), x -> {}, n, s, w);
+  }
+
+  /**
+   * @param c
+   *          session source, invoked once per subscription
+   * @param r
+   *          invoked with the session once the subscription is done with it
+   * @param n
+   *          remote file name
+   * @param s
+   *          read size
+   * @param w
+   *          maximum reads in flight
+   */
+  public ReadPublisher (Supplier <? extends CompletableFuture <? extends Client>> c,
+                        Consumer <Client> r,
+                        String n,
+                        int s,
+                        int w) {
+    if (s < 1 || w < 1) throw new IllegalArgumentException ("Read size and window must be positive");
+    sessions = c;
+    release = r;
+    name = n;
+    size = s;
+    window = w;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.
+   * Subscriber)
+   */
+  @Override
+  public void subscribe (Subscriber <? super ByteBuffer> s) {
+    s.onSubscribe (new Transfer (s));
+  }
+
+  /**
+   * Single subscription
+   * 
+   * @author levk
+   */
+  private class Transfer implements Subscription {
+    /**
+     * Subscriber
+     */
+    private final Subscriber <? super ByteBuffer> subscriber;
+    /**
+     * Session, once acquired
+     */
+    private Client client;
+    /**
+     * Whether the session was requested
+     */
+    private boolean acquiring;
+    /**
+     * Requested chunks not yet published
+     */
+    private long demand;
+    /**
+     * Reads in flight
+     */
+    private int outstanding;
+    /**
+     * Whether no more reads are to be issued
+     */
+    private boolean done;
+    /**
+     * Tail of the in-order delivery chain
+     */
+    private CompletableFuture <Void> delivery = completedFuture (null);
+
+    /**
+     * @param s
+     *          subscriber
+     */
+    private Transfer (Subscriber <? super ByteBuffer> s) {
+      subscriber = s;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.Flow.Subscription#request(long)
+     */
+    @Override
+    public synchronized void request (long n) {
+      if (done) return;
+      else if (n < 1) finish (new IllegalArgumentException ("Non-positive request " + n), true);
+      else {
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        if (!acquiring) {
+          acquiring = true;
+          sessions.get ().whenComplete (this::acquired);
+        } else pump ();
+      }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.Flow.Subscription#cancel()
+     */
+    @Override
+    public synchronized void cancel () {
+      finish (null, false);
+    }
+
+    /**
+     * @param c
+     *          session
+     * @param e
+     *          failure to acquire
+     */
+    private synchronized void acquired (Client c, Throwable e) {
+      if (e != null) {
+        done = true;
+        subscriber.onError (e);
+      } else {
+        client = c;
+        if (done) release.accept (c);
+        else {
+          chain (client.execute (new Open (name)), (x, f) -> opened (f));
+          pump ();
+        }
+      }
+    }
+
+    /**
+     * @param e
+     *          failure to open
+     */
+    private synchronized void opened (Throwable e) {
+      if (e != null) finish (e, true);
+    }
+
+    /**
+     * Issues reads while the window and demand allow
+     */
+    private void pump () {
+      while (client != null && !done && outstanding < window && outstanding < demand) {
+        outstanding++;
+        chain (client.execute (new Read (size)), this::receive);
+      }
+    }
+
+    /**
+     * @param f
+     *          promise
+     * @param c
+     *          invoked in order of chaining once the promise completes
+     */
+    private <T> void chain (CompletableFuture <T> f, BiConsumer <T, Throwable> c) {
+      delivery = delivery.thenCompose (x -> f.handle ( (v, e) -> {
+        c.accept (v, e);
+        return null;
+      }));
+    }
+
+    /**
+     * @param b
+     *          chunk
+     * @param e
+     *          failure to read
+     */
+    private synchronized void receive (ByteBuffer b, Throwable e) {
+      outstanding--;
+      if (done) return;
+      else if (e != null) finish (e, true);
+      else {
+        int l = b.remaining ();
+        if (l > 0) {
+          demand--;
+          subscriber.onNext (b);
+        }
+        if (l < size) finish (null, true);
+        else pump ();
+      }
+    }
+
+    /**
+     * Closes the file once the reads in flight complete, then releases the
+     * session
+     * 
+     * @param e
+     *          failure to signal, if any
+     * @param s
+     *          whether to signal the subscriber
+     */
+    private void finish (Throwable e, boolean s) {
+      if (done) return;
+      done = true;
+      if (client == null) {
+        if (s) subscriber.onError (e);
+      } else delivery.thenCompose (x -> client.execute (new Close ())).whenComplete ( (x, f) -> {
+        release.accept (client);
+        if (s && e != null) subscriber.onError (e);
+        else if (s && f != null) subscriber.onError (f);
+        else if (s) subscriber.onComplete ();
+      });
+    }
+  }
+}
@@ -0,0 +1,536 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.pool;
+
+import static java.lang.Math.floorMod;
+import static java.util.Comparator.comparingInt;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.data.SparseMatrix;
+import us.levk.rserve.client.flow.ReadPublisher;
+import us.levk.rserve.client.protocol.commands.Command;
+
+/**
+ * Client spreading commands over a number of sessions, each command is routed
+ * to the session with the fewest outstanding commands among those not leased,
+ * or held until one is returned if all are. Commands are routed independently
+ * of each other so anything relying on the state of the R session must run on
+ * a {@link Lease}, {@link #push(File)}, {@link #pull(String, int)},
+ * {@link #batch(Object)}, chunked assignments and assignments of a
+ * {@link SparseMatrix} do so
+ * 
+ * @author levk
+ */
+public class Pool implements Client {
+
+  /**
+   * Pooled session
+   * 
+   * @author levk
+   */
+  private static class Member implements Client {
+    /**
+     * Session
+     */
+    private final Client client;
+    /**
+     * Outstanding commands
+     */
+    private final AtomicInteger load = new AtomicInteger ();
+    /**
+     * Whether the session is leased
+     */
+    private volatile boolean leased;
+
+    /**
+     * @param c
+     *          session
+     */
+    private Member (Client c) {
+      client = c;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * us.levk.rserve.client.Client#execute(us.levk.rserve.client.protocol.
+     * commands.Command)
+     */
+    @Override
+    public <T> CompletableFuture <T> execute (Command <T> c) {
+      load.incrementAndGet ();
+      CompletableFuture <T> r = client.execute (c);
+      r.whenComplete ( (x, e) -> load.decrementAndGet ());
+      return r;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see us.levk.rserve.client.Client#pipelined()
+     */
+    @Override
+    public boolean pipelined () {
+      return client.pipelined ();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close () throws IOException {
+      client.close ();
+    }
+  }
+
+  /**
+   * Command for a session that is not leased, submitted as soon as one is
+   * 
+   * @author levk
+   */
+  private static class Deferred <T> {
+    /**
+     * Command
+     */
+    private final Command <T> command;
+    /**
+     * Receiver for the command result
+     */
+    private final CompletableFuture <T> receiver = new CompletableFuture <> ();
+
+    /**
+     * @param c
+     *          command
+     */
+    private Deferred (Command <T> c) {
+      command = c;
+    }
+
+    /**
+     * @param m
+     *          session to execute the command on
+     */
+    private void submit (Member m) {
+      m.execute (command).whenComplete ( (x, e) -> {
+        if (e != null) receiver.completeExceptionally (e);
+        else receiver.complete (x);
+      });
+    }
+  }
+
+  /**
+   * Session leased for exclusive use, returned to the pool on close
+   * 
+   * @author levk
+   */
+  public class Lease implements Client {
+    /**
+     * Leased session
+     */
+    private final Member member;
+    /**
+     * Whether the lease was returned
+     */
+    private final AtomicBoolean returned = new AtomicBoolean ();
+
+    /**
+     * @param m
+     *          leased session
+     */
+    private Lease (Member m) {
+      member = m;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * us.levk.rserve.client.Client#execute(us.levk.rserve.client.protocol.
+     * commands.Command)
+     */
+    @Override
+    public <T> CompletableFuture <T> execute (Command <T> c) {
+      if (!returned.get ()) return member.execute (c);
+      CompletableFuture <T> r = new CompletableFuture <> ();
+      r.completeExceptionally (new IllegalStateException ("Lease already returned"));
+      return r;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see us.levk.rserve.client.Client#pipelined()
+     */
+    @Override
+    public boolean pipelined () {
+      return member.pipelined ();
+    }
+
+    /**
+     * Returns the session to the pool once the reset step, if any, succeeds,
+     * the session is evicted and closed if it fails
+     */
+    @Override
+    public void close () {
+      if (!returned.getAndSet (true))
+        (reset == null ? completedFuture (null) : member.evaluate (reset)).whenComplete ( (x, e) -> {
+          if (e == null) release (member);
+          else evict (member, e);
+        });
+    }
+  }
+
+  /**
+   * Sessions
+   */
+  private final List <Member> members;
+  /**
+   * Code evaluated on a session when its lease is returned
+   */
+  private final String reset;
+  /**
+   * Connects a replacement for an evicted session, or null
+   */
+  private final Function <Client, CompletableFuture <? extends Client>> replacement;
+  /**
+   * Pending leases
+   */
+  private final Queue <CompletableFuture <Lease>> waiting = new ArrayDeque <> ();
+  /**
+   * Commands pending while all sessions are leased
+   */
+  private final Queue <Deferred <?>> deferred = new ArrayDeque <> ();
+  /**
+   * Whether the pool is closed
+   */
+  private boolean closed;
+  /**
+   * Rotating scan offset so ties don't always go to the same session
+   */
+  private final AtomicInteger offset = new AtomicInteger ();
+
+  /**
+   * @param c
+   *          connected sessions, closed with the pool
+   */
+  public Pool (List <? extends Client> c) {
+    this (c, null);
+  }
+
+  /**
+   * @param c
+   *          connected sessions, closed with the pool
+   * @param r
+   *          code to evaluate on a session before it is reused after a lease,
+   *          e.g. to clear the global environment, or null
+   */
+  public Pool (List <? extends Client> c, String r) {
+    this (c, r, null);
+  }
+
+  /**
+   * @param c
+   *          connected sessions, closed with the pool
+   * @param r
+   *          code to evaluate on a session before it is reused after a lease,
+   *          e.g. to clear the global environment, or null
+   * @param f
+   *          connects a replacement for a session evicted because its reset
+   *          failed, given the evicted session, or null to shrink the pool
+   */
+  public Pool (List <? extends Client> c, String r, Function <Client, CompletableFuture <? extends Client>> f) {
+    if (c.isEmpty ()) throw new IllegalArgumentException ("Empty pool");
+    members = new CopyOnWriteArrayList <> (c.stream ().map (Member::new).collect (toList ()));
+    reset = r;
+    replacement = f;
+  }
+
+  /**
+   * @return session not leased with the fewest outstanding commands
+   */
+  private Optional <Member> least () {
+    int o = offset.getAndIncrement (), s = members.size ();
+    return range (0, s).mapToObj (i -> members.get (floorMod (o + i, s))).filter (m -> !m.leased)
+                       .min (comparingInt (m -> m.load.get ()));
+  }
+
+  /**
+   * @return promise of a session for exclusive use, close the lease to return
+   *         it to the pool
+   */
+  public CompletableFuture <Lease> lease () {
+    CompletableFuture <Lease> r = new CompletableFuture <> ();
+    Optional <Member> m;
+
+    synchronized (waiting) {
+      m = least ();
+      if (m.isPresent ()) m.get ().leased = true;
+      else if (closed || members.isEmpty ())
+        r.completeExceptionally (new IOException (closed ? "Pool closed" : "No sessions left in the pool"));
+      else waiting.add (r);
+    }
+
+    m.ifPresent (x -> r.complete (new Lease (x)));
+    return r;
+  }
+
+  /**
+   * @param m
+   *          session to hand over to the next pending lease or, if there is
+   *          none, mark available and drain the pending commands onto
+   */
+  private void release (Member m) {
+    CompletableFuture <Lease> w;
+
+    synchronized (waiting) {
+      if ((w = waiting.poll ()) == null) {
+        m.leased = false;
+        for (Deferred <?> d; (d = deferred.poll ()) != null;)
+          d.submit (m);
+      }
+    }
+
+    if (w != null) w.complete (new Lease (m));
+  }
+
+  /**
+   * @param m
+   *          session in an unknown state to take out of rotation, replaced if
+   *          a replacement is configured
+   * @param e
+   *          cause
+   */
+  private void evict (Member m, Throwable e) {
+    synchronized (waiting) {
+      members.remove (m);
+    }
+    try {
+      m.close ();
+    } catch (IOException x) {
+      e.addSuppressed (x);
+    }
+    if (replacement == null) abandon (e);
+    else replacement.apply (m.client).whenComplete ( (c, x) -> {
+      if (x != null) abandon (x);
+      else join (c);
+    });
+  }
+
+  /**
+   * @param c
+   *          connected session to add to the pool
+   */
+  private void join (Client c) {
+    Member m = new Member (c);
+    boolean a;
+    m.leased = true;
+
+    synchronized (waiting) {
+      if (a = !closed) members.add (m);
+    }
+
+    if (a) release (m);
+    else try {
+      c.close ();
+    } catch (IOException e) {}
+  }
+
+  /**
+   * @param e
+   *          cause failing pending leases and commands if no sessions are left
+   */
+  private void abandon (Throwable e) {
+    List <CompletableFuture <Lease>> w;
+    List <Deferred <?>> d;
+
+    synchronized (waiting) {
+      if (!members.isEmpty ()) return;
+      w = new ArrayList <> (waiting);
+      d = new ArrayList <> (deferred);
+      waiting.clear ();
+      deferred.clear ();
+    }
+
+    IOException x = new IOException ("No sessions left in the pool", e);
+    w.forEach (l -> l.completeExceptionally (x));
+    d.forEach (c -> c.receiver.completeExceptionally (x));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.Client#execute(us.levk.rserve.client.protocol.commands.
+   * Command)
+   */
+  @Override
+  public <T> CompletableFuture <T> execute (Command <T> c) {
+    Deferred <T> d = new Deferred <> (c);
+
+    synchronized (waiting) {
+      Optional <Member> m = least ();
+      if (m.isPresent ()) d.submit (m.get ());
+      else if (closed || members.isEmpty ())
+        d.receiver.completeExceptionally (new IOException (closed ? "Pool closed" : "No sessions left in the pool"));
+      else deferred.add (d);
+    }
+
+    return d.receiver;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#assign(java.lang.String,
+   * java.lang.Object)
+   */
+  @Override
+  public CompletableFuture <Void> assign (String n, Object v) {
+    if (!(v instanceof SparseMatrix)) return Client.super.assign (n, v);
+    else return lease ().thenCompose (l -> l.assign (n, v).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#assignAll(java.util.Map)
+   */
+  @Override
+  public CompletableFuture <Void> assignAll (Map <String, ?> v) {
+    if (v.values ().stream ().noneMatch (x -> x instanceof SparseMatrix)) return Client.super.assignAll (v);
+    else return lease ().thenCompose (l -> l.assignAll (v).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#assignChunked(java.lang.String, double[],
+   * int)
+   */
+  @Override
+  public CompletableFuture <Void> assignChunked (String n, double[] v, int k) {
+    return lease ().thenCompose (l -> l.assignChunked (n, v, k).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#assignChunked(java.lang.String, int[],
+   * int)
+   */
+  @Override
+  public CompletableFuture <Void> assignChunked (String n, int[] v, int k) {
+    return lease ().thenCompose (l -> l.assignChunked (n, v, k).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#assignChunked(java.lang.String,
+   * java.util.List, int)
+   */
+  @Override
+  public CompletableFuture <Void> assignChunked (String n, List <?> v, int k) {
+    return lease ().thenCompose (l -> l.assignChunked (n, v, k).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#push(java.io.File)
+   */
+  @Override
+  public CompletableFuture <Void> push (File f) {
+    return lease ().thenCompose (l -> l.push (f).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#pull(java.lang.String, int)
+   */
+  @Override
+  public Publisher <ByteBuffer> pull (String n, int s) {
+    return new ReadPublisher (this::lease, l -> ((Lease) l).close (), n, s, FILE_READ_WINDOW);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#batch(java.lang.Object)
+   */
+  @Override
+  public <T> CompletableFuture <T> batch (T j) {
+    return lease ().thenCompose (l -> l.batch (j).whenComplete ( (x, e) -> l.close ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close () throws IOException {
+    IOException e = null;
+    synchronized (waiting) {
+      closed = true;
+      for (CompletableFuture <Lease> w; (w = waiting.poll ()) != null;)
+        w.completeExceptionally (new IOException ("Pool closed"));
+      for (Deferred <?> d; (d = deferred.poll ()) != null;)
+        d.receiver.completeExceptionally (new IOException ("Pool closed"));
+    }
+    for (Member m : members)
+      try {
+        m.close ();
+      } catch (IOException x) {
+        if (e == null) e = x;
+        else e.addSuppressed (x);
+      }
+    if (e != null) throw e;
+  }
+}
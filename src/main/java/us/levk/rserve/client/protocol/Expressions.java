@@ -0,0 +1,228 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static us.levk.rserve.client.protocol.Qap.XT_HAS_ATTR;
+import static us.levk.rserve.client.protocol.Qap.XT_LARGE;
+import static us.levk.rserve.client.protocol.Qap.XT_LIST_TAG;
+import static us.levk.rserve.client.protocol.Qap.XT_SYMNAME;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Encoded expression tools, buffers passed in are positioned at the start of
+ * an expression header and are left untouched unless stated otherwise, the
+ * buffers returned are little endian slices sharing content
+ * 
+ * @author levk
+ */
+public interface Expressions {
+
+  /**
+   * @param v
+   *          value
+   * @param m
+   *          mapper for values not encoded directly
+   * @return buffers of the encoded expression
+   * @throws IOException
+   *           on encoding failure
+   */
+  static List <ByteBuffer> encode (Object v, ObjectMapper m) throws IOException {
+    if (v instanceof Expression) return ((Expression) v).encode ().collect (toList ());
+    if (v instanceof ByteBuffer) try {
+      return Vectors.raw ((ByteBuffer) v).collect (toList ());
+    } catch (ArithmeticException e) {
+      throw new IOException ("Vector is too large", e);
+    }
+    List <ByteBuffer> b = Vectors.encode (v);
+    if (b != null) return b;
+    try (ByteArrayOutputStream o = new ByteArrayOutputStream ()) {
+      m.writeValue (o, v);
+      return singletonList (ByteBuffer.wrap (o.toByteArray ()));
+    }
+  }
+
+  /**
+   * @param v
+   *          value
+   * @return whether the value is encoded without going through the mapper
+   */
+  static boolean direct (Object v) {
+    return v instanceof Expression || v instanceof ByteBuffer || v instanceof double[] || v instanceof int[]
+           || v instanceof boolean[] || v instanceof String[];
+  }
+
+  /**
+   * @param t
+   *          expression type
+   * @param a
+   *          encoded attribute values by name in order
+   * @param c
+   *          encoded content
+   * @return buffers of the expression, with the attributes if any
+   */
+  static Stream <ByteBuffer> expression (int t, Map <String, List <ByteBuffer>> a, List <ByteBuffer> c) {
+    List <ByteBuffer> l = new ArrayList <> ();
+    a.forEach ( (n, v) -> {
+      l.addAll (v);
+      Qap.symbol (n).forEach (l::add);
+    });
+    long s = 0;
+    for (ByteBuffer b : l)
+      s += b.remaining ();
+    ByteBuffer h = Qap.header (XT_LIST_TAG, s);
+    s += h.remaining ();
+    for (ByteBuffer b : c)
+      s += b.remaining ();
+    if (a.isEmpty ()) return Stream.concat (Stream.of (Qap.header (t, s - h.remaining ())), c.stream ());
+    else return Stream.of (Stream.of (Qap.header (t | XT_HAS_ATTR, s), h), l.stream (), c.stream ()).flatMap (x -> x);
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return type without flags
+   */
+  static int type (ByteBuffer e) {
+    return e.get (e.position ()) & (XT_LARGE - 1);
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return whether the expression carries attributes
+   */
+  static boolean attributed (ByteBuffer e) {
+    return (e.get (e.position ()) & XT_HAS_ATTR) != 0;
+  }
+
+  /**
+   * @param b
+   *          buffer positioned at an expression, advanced past it
+   * @return the whole expression, header included
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  static ByteBuffer next (ByteBuffer b) throws IOException {
+    ByteBuffer d = b.duplicate ().order (LITTLE_ENDIAN);
+    if (d.remaining () < 4) throw new IOException ("Truncated expression header");
+    int h = d.getInt ();
+    long l = h >>> 8;
+    if ((h & XT_LARGE) != 0) {
+      if (d.remaining () < 4) throw new IOException ("Truncated expression header");
+      l |= (d.getInt () & 0xffffffffL) << 24;
+    }
+    if (l > d.remaining ()) throw new IOException ("Expression of " + l + " bytes is truncated");
+    ByteBuffer r = d.limit (d.position () + (int) l).position (b.position ()).slice ().order (LITTLE_ENDIAN);
+    b.position (d.limit ());
+    return r;
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return header length
+   */
+  static int header (ByteBuffer e) {
+    return (e.get (e.position ()) & XT_LARGE) != 0 ? 8 : 4;
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return attributes pair list, null if none
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  static ByteBuffer attributes (ByteBuffer e) throws IOException {
+    if (!attributed (e)) return null;
+    ByteBuffer b = next (e.duplicate ());
+    return next (b.position (header (b)));
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @param n
+   *          attribute name
+   * @return attribute value expression, null if absent
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  static ByteBuffer attribute (ByteBuffer e, String n) throws IOException {
+    ByteBuffer a = attributes (e);
+    if (a == null || type (a) != XT_LIST_TAG) return null;
+    for (a.position (header (a)); a.hasRemaining ();) {
+      ByteBuffer v = next (a);
+      if (a.hasRemaining () && n.equals (symbol (next (a)))) return v;
+    }
+    return null;
+  }
+
+  /**
+   * @param e
+   *          expression
+   * @return content following the header and attributes
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  static ByteBuffer content (ByteBuffer e) throws IOException {
+    ByteBuffer b = next (e.duplicate ());
+    b.position (header (b));
+    if (attributed (e)) next (b);
+    return b.slice ().order (LITTLE_ENDIAN);
+  }
+
+  /**
+   * @param e
+   *          symbol expression
+   * @return symbol name, null if not a symbol
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  static String symbol (ByteBuffer e) throws IOException {
+    if (type (e) != XT_SYMNAME) return null;
+    ByteBuffer c = content (e);
+    int l = 0;
+    while (l < c.limit () && c.get (l) != 0)
+      l++;
+    byte[] b = new byte[l];
+    c.get (b);
+    return new String (b, UTF_8);
+  }
+}
@@ -28,12 +28,15 @@ package us.levk.rserve.client.protocol;
 import static java.nio.ByteBuffer.allocate;
 import static java.nio.ByteBuffer.wrap;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Stream.of;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.stream.Stream;
 
+import org.rosuda.REngine.Rserve.protocol.REXPFactory;
 import org.rosuda.REngine.Rserve.protocol.RTalk;
 
 /**
@@ -58,6 +61,59 @@ public interface Qap {
   static final int DT_BYTESTREAM = RTalk.DT_BYTESTREAM;
   static final int DT_INT = RTalk.DT_INT;
 
+  /**
+   * Flag for expressions larger than 0xffffff
+   */
+  static final int XT_LARGE = 64;
+  /**
+   * Flag for expressions followed by attributes
+   */
+  static final int XT_HAS_ATTR = 128;
+  /**
+   * Null expression type
+   */
+  static final int XT_NULL = REXPFactory.XT_NULL;
+  /**
+   * S4 object expression type
+   */
+  static final int XT_S4 = REXPFactory.XT_S4;
+  /**
+   * Symbol expression type
+   */
+  static final int XT_SYMNAME = REXPFactory.XT_SYMNAME;
+  /**
+   * Untagged call expression type
+   */
+  static final int XT_LANG_NOTAG = REXPFactory.XT_LANG_NOTAG;
+  /**
+   * Tagged pair list expression type
+   */
+  static final int XT_LIST_TAG = REXPFactory.XT_LIST_TAG;
+  /**
+   * Generic vector expression type
+   */
+  static final int XT_VECTOR = REXPFactory.XT_VECTOR;
+  /**
+   * Integer vector expression type
+   */
+  static final int XT_ARRAY_INT = REXPFactory.XT_ARRAY_INT;
+  /**
+   * Double vector expression type
+   */
+  static final int XT_ARRAY_DOUBLE = REXPFactory.XT_ARRAY_DOUBLE;
+  /**
+   * Character vector expression type
+   */
+  static final int XT_ARRAY_STR = REXPFactory.XT_ARRAY_STR;
+  /**
+   * Logical vector expression type
+   */
+  static final int XT_ARRAY_BOOL = REXPFactory.XT_ARRAY_BOOL;
+  /**
+   * Raw vector expression type
+   */
+  static final int XT_RAW = REXPFactory.XT_RAW;
+
   /**
    * Assign command code
    */
@@ -76,38 +132,44 @@ public interface Qap {
   static final int CMD_openFile = RTalk.CMD_openFile;
   static final int CMD_readFile = RTalk.CMD_readFile;
 
+  /**
+   * Length of the server identification sent upon connection
+   */
+  static final int ID_LENGTH = 32;
+  /**
+   * Length of the message header
+   */
+  static final int HEADER_LENGTH = 16;
+
   /**
    * @param c
    *          code
    * @param s
-   *          size
-   * @return header
+   *          size, up to 56 bits
+   * @return header, 8 bytes long with the large flag set for sizes over
+   *         0xfffff0
    */
-  static ByteBuffer header (int c, int s) {
+  static ByteBuffer header (int c, long s) {
+    if (s < 0 || s >>> 56 != 0) throw new IllegalArgumentException ("Size " + s + " is out of range");
     boolean l = s > 0xfffff0;
     byte[] b = new byte[l ? 8 : 4];
-    int o = 0;
-    b[o] = (byte) ((c & 255) | ((s > 0xfffff0) ? DT_LARGE : 0));
-    o++;
-    b[o] = (byte) (s & 255);
-    o++;
-    b[o] = (byte) ((s & 0xff00) >> 8);
-    o++;
-    b[o] = (byte) ((s & 0xff0000) >> 16);
-    o++;
-    if (l) {
-      b[o] = (byte) ((s & 0xff000000) >> 24);
-      o++;
-      b[o] = 0;
-      o++;
-      b[o] = 0;
-      o++;
-      b[o] = 0;
-      o++;
-    }
+    b[0] = (byte) ((c & 255) | (l ? DT_LARGE : 0));
+    for (int o = 1; o < b.length; o++)
+      b[o] = (byte) (s >>> (8 * (o - 1)));
     return wrap (b);
   }
 
+  /**
+   * @param c
+   *          command code
+   * @param l
+   *          length of the parameters
+   * @return message header, the length split in low and high words
+   */
+  static ByteBuffer message (int c, long l) {
+    return allocate (HEADER_LENGTH).order (LITTLE_ENDIAN).putInt (0, c).putInt (4, (int) l).putInt (12, (int) (l >>> 32));
+  }
+
   /**
    * @param s
    *          string
@@ -119,6 +181,17 @@ public interface Qap {
     return of (header (DT_STRING, l + p), wrap (s.getBytes ()), allocate (p + 1));
   }
 
+  /**
+   * @param s
+   *          symbol name
+   * @return stream of encoded buffers
+   */
+  static Stream <ByteBuffer> symbol (String s) {
+    byte[] b = s.getBytes (UTF_8);
+    int l = (b.length + 4) & ~3;
+    return of (header (XT_SYMNAME, l), wrap (b), allocate (l - b.length));
+  }
+
   /**
    * @param c
    *          content
@@ -146,21 +219,61 @@ public interface Qap {
     return of (header (DT_BYTESTREAM, b.limit () - b.position ()), b);
   }
 
+  /**
+   * @param i
+   *          server identification
+   * @throws IOException
+   *           on unsupported server, protocol version or authentication
+   */
+  static void identify (ByteBuffer i) throws IOException {
+    byte[] b = new byte[ID_LENGTH];
+    i.get (b);
+    String s = new String (b, US_ASCII);
+    if (!s.startsWith ("Rsrv")) throw new IOException ("Unsupported server identification " + s);
+    else if (!s.startsWith ("0103", 4)) throw new IOException ("Unsupported protocol version " + s.substring (4, 8));
+    else if (!s.startsWith ("QAP1", 8)) throw new IOException ("Unsupported protocol " + s.substring (8, 12));
+    else for (int o = 12; o < ID_LENGTH; o += 4)
+      if (s.startsWith ("AR", o)) throw new IOException ("Unsupported authentication " + s.substring (o, o + 4));
+  }
+
+  /**
+   * @param h
+   *          message header
+   * @return length of the message content following the header; unlike the
+   *         lengths of commands this is capped at what a single buffer holds,
+   *         as responses are read and decoded whole
+   * @throws IOException
+   *           if the content would not fit a single buffer
+   */
+  static int length (ByteBuffer h) throws IOException {
+    long l = (h.getInt (h.position () + 4) & 0xffffffffL) | ((long) h.getInt (h.position () + 12) << 32);
+    if (l > Integer.MAX_VALUE - HEADER_LENGTH) throw new IOException ("Message of " + l + " bytes is too large");
+    return (int) l;
+  }
+
   /**
    * @param i
    *          input
-   * @return packet content (or null if no content)
+   * @return response content following the message header
    * @throws IOException
    *           on read or bad packet
    */
-  static ByteBuffer packet (ByteBuffer i) throws IOException {
+  static ByteBuffer response (ByteBuffer i) throws IOException {
     int r = i.getInt ();
-    if ((r & 0xf) == 1) {
-      int s = i.getInt ();
-      int h = i.position () + 8;
-      i.position (h);
-      if (s > 0) i.position (h + ((i.get () & DT_LARGE) > 0 ? 8 : 4));
-      return i;
-    } else throw new IOException ("Error response packet with error code " + ((r >> 24) & 127));
+    if ((r & 0xf) == 1) return i.position (i.position () + HEADER_LENGTH - 4);
+    else throw new IOException ("Error response packet with error code " + ((r >> 24) & 127));
+  }
+
+  /**
+   * @param i
+   *          input
+   * @return packet content following the data header (empty if no content)
+   * @throws IOException
+   *           on read or bad packet
+   */
+  static ByteBuffer packet (ByteBuffer i) throws IOException {
+    response (i);
+    if (i.hasRemaining ()) i.position (i.position () + ((i.get (i.position ()) & DT_LARGE) > 0 ? 8 : 4));
+    return i;
   }
 }
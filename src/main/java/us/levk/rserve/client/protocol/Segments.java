@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol;
+
+import static java.lang.Math.min;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expression written as its header followed by content segments of bounded
+ * size, each allocated as the previous one fills, so the content may exceed
+ * the limits of a single buffer. Not thread safe
+ * 
+ * @author levk
+ */
+class Segments {
+
+  /**
+   * Header and filled segments
+   */
+  private final List <ByteBuffer> buffers = new ArrayList <> ();
+  /**
+   * Largest segment size in bytes
+   */
+  private final int size;
+  /**
+   * Content bytes not yet allocated
+   */
+  private long remaining;
+  /**
+   * Segment being filled
+   */
+  private ByteBuffer current;
+
+  /**
+   * @param t
+   *          expression type
+   * @param l
+   *          content length
+   * @param s
+   *          largest segment size in bytes
+   */
+  Segments (int t, long l, int s) {
+    buffers.add (Qap.header (t, l));
+    remaining = l;
+    size = s;
+  }
+
+  /**
+   * @param b
+   *          byte
+   * @return this
+   */
+  Segments put (byte b) {
+    room ().put (b);
+    return this;
+  }
+
+  /**
+   * @param b
+   *          bytes
+   * @return this
+   */
+  Segments put (byte[] b) {
+    for (int o = 0, n; o < b.length; o += n) {
+      ByteBuffer c = room ();
+      c.put (b, o, n = min (b.length - o, c.remaining ()));
+    }
+    return this;
+  }
+
+  /**
+   * @param i
+   *          little endian integer
+   * @return this
+   */
+  Segments putInt (int i) {
+    return put (new byte[] { (byte) i, (byte) (i >>> 8), (byte) (i >>> 16), (byte) (i >>> 24) });
+  }
+
+  /**
+   * @param p
+   *          byte to fill the rest of the content with
+   * @return this
+   */
+  Segments pad (byte p) {
+    while (remaining > 0 || current != null && current.hasRemaining ())
+      put (p);
+    return this;
+  }
+
+  /**
+   * @return header followed by the segments
+   * @throws IllegalStateException
+   *           if the content is not filled
+   */
+  List <ByteBuffer> buffers () {
+    if (remaining > 0 || current != null && current.hasRemaining ())
+      throw new IllegalStateException ("Expression content short by " + (remaining + (current == null ? 0 : current.remaining ())) + " bytes");
+    for (int i = 1; i < buffers.size (); i++)
+      buffers.get (i).flip ();
+    return buffers;
+  }
+
+  /**
+   * @return segment with room to write to
+   */
+  private ByteBuffer room () {
+    if (current == null || !current.hasRemaining ()) {
+      if (remaining == 0) throw new BufferOverflowException ();
+      buffers.add (current = allocate ((int) min (remaining, size)).order (LITTLE_ENDIAN));
+      remaining -= current.capacity ();
+    }
+    return current;
+  }
+}
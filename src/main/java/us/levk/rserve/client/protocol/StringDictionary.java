@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol;
+
+import static java.lang.Integer.highestOneBit;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded dictionary of strings decoded during a response keyed by their
+ * encoded bytes, so that repeated values share one instance and a hit
+ * decodes nothing. Once full, further values are decoded but not retained.
+ * Not thread safe
+ * 
+ * @author levk
+ */
+public class StringDictionary {
+
+  /**
+   * Slots the table starts with
+   */
+  private static final int INITIAL_SLOTS = 16;
+
+  /**
+   * Maximum entries
+   */
+  private final int capacity;
+  /**
+   * Encoded keys, open addressed, at most half full
+   */
+  private byte[][] keys;
+  /**
+   * Decoded values
+   */
+  private String[] values;
+  /**
+   * Entries
+   */
+  private int size;
+
+  /**
+   * @param c
+   *          maximum number of entries, the table starts small and grows
+   *          with the entries actually added
+   */
+  public StringDictionary (int c) {
+    if (c < 1 || c > 1 << 28) throw new IllegalArgumentException ("Capacity " + c + " is out of range");
+    capacity = c;
+    keys = new byte[min (INITIAL_SLOTS, highestOneBit (c) << 2)][];
+    values = new String[keys.length];
+  }
+
+  /**
+   * @param b
+   *          buffer
+   * @param p
+   *          offset of the encoded string
+   * @param l
+   *          length of the encoded string
+   * @return shared instance of the UTF-8 decoded string
+   */
+  public String get (ByteBuffer b, int p, int l) {
+    int h = hash (b, p, l);
+    int m = keys.length - 1;
+    for (int i = h & m; keys[i] != null; i = (i + 1) & m)
+      if (matches (keys[i], b, p, l)) return values[i];
+    byte[] k = new byte[l];
+    b.get (p, k);
+    String v = new String (k, UTF_8);
+    if (size < capacity) {
+      if (size + 1 > keys.length >> 1) grow ();
+      put (h, k, v);
+      size++;
+    }
+    return v;
+  }
+
+  /**
+   * @return number of entries
+   */
+  public int size () {
+    return size;
+  }
+
+  /**
+   * Doubles the table
+   */
+  private void grow () {
+    byte[][] k = keys;
+    String[] v = values;
+    keys = new byte[k.length << 1][];
+    values = new String[keys.length];
+    for (int i = 0; i < k.length; i++)
+      if (k[i] != null) put (hash (ByteBuffer.wrap (k[i]), 0, k[i].length), k[i], v[i]);
+  }
+
+  /**
+   * @param h
+   *          hash
+   * @param k
+   *          key not in the table
+   * @param v
+   *          value
+   */
+  private void put (int h, byte[] k, String v) {
+    int m = keys.length - 1, i = h & m;
+    while (keys[i] != null)
+      i = (i + 1) & m;
+    keys[i] = k;
+    values[i] = v;
+  }
+
+  /**
+   * @param b
+   *          buffer
+   * @param p
+   *          offset
+   * @param l
+   *          length
+   * @return spread hash of the bytes
+   */
+  private static int hash (ByteBuffer b, int p, int l) {
+    int h = 1;
+    for (int i = 0; i < l; i++)
+      h = 31 * h + b.get (p + i);
+    return h ^ h >>> 16;
+  }
+
+  /**
+   * @param k
+   *          key
+   * @param b
+   *          buffer
+   * @param p
+   *          offset
+   * @param l
+   *          length
+   * @return whether the key equals the bytes
+   */
+  private static boolean matches (byte[] k, ByteBuffer b, int p, int l) {
+    if (k.length != l) return false;
+    for (int i = 0; i < l; i++)
+      if (k[i] != b.get (p + i)) return false;
+    return true;
+  }
+}
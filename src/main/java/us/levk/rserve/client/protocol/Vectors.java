@@ -0,0 +1,476 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol;
+
+import static java.lang.Math.addExact;
+import static java.lang.Math.min;
+import static java.lang.Math.multiplyExact;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.attributed;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_BOOL;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_DOUBLE;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_STR;
+import static us.levk.rserve.client.protocol.Qap.XT_RAW;
+import static us.levk.rserve.client.protocol.Qap.header;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import us.levk.rserve.client.data.DataFrame;
+import us.levk.rserve.client.data.Factor;
+import us.levk.rserve.client.data.LazySexp;
+import us.levk.rserve.client.data.RMatrix;
+import us.levk.rserve.client.data.SparseMatrix;
+
+/**
+ * Direct codec of atomic vectors to and from primitive arrays, bypassing the
+ * mapper
+ * 
+ * @author levk
+ */
+public interface Vectors {
+
+  /**
+   * NA double value
+   */
+  static final double NA_REAL = Double.longBitsToDouble (0x7ff00000000007a2L);
+  /**
+   * NA integer value
+   */
+  static final int NA_INTEGER = Integer.MIN_VALUE;
+  /**
+   * NA value of class integer64
+   */
+  static final long NA_INTEGER64 = Long.MIN_VALUE;
+  /**
+   * NA string marker
+   */
+  static final byte NA_STRING = (byte) 0xff;
+  /**
+   * NA logical value
+   */
+  static final byte NA_LOGICAL = 2;
+  /**
+   * Character vector padding
+   */
+  static final byte STRING_PADDING = 1;
+  /**
+   * Logical vector padding
+   */
+  static final byte LOGICAL_PADDING = (byte) 0xff;
+  /**
+   * Largest segment of a vector content in bytes
+   */
+  static final int SEGMENT_SIZE = 1 << 30;
+
+  /**
+   * @param v
+   *          value
+   * @return buffers of the encoded expression if the value is a supported
+   *         primitive array, null otherwise; the content is split in segments
+   *         of at most {@link #SEGMENT_SIZE} bytes
+   * @throws IOException
+   *           if the vector is too large
+   */
+  static List <ByteBuffer> encode (Object v) throws IOException {
+    try {
+      if (v instanceof double[]) return doubles ((double[]) v, SEGMENT_SIZE);
+      else if (v instanceof int[]) return integers ((int[]) v, SEGMENT_SIZE);
+      else if (v instanceof boolean[]) return logicals ((boolean[]) v, SEGMENT_SIZE);
+      else if (v instanceof String[]) return strings ((String[]) v, SEGMENT_SIZE);
+      else return null;
+    } catch (ArithmeticException e) {
+      throw new IOException ("Vector is too large", e);
+    }
+  }
+
+  /**
+   * @param c
+   *          encoded expression
+   * @param t
+   *          target type
+   * @return decoded value if the expression is a well formed attribute free
+   *         vector of the target type, a dense or sparse matrix, a data
+   *         frame, a factor or a lazy view, null otherwise; {@link DoubleBuffer}
+   *         and {@link IntBuffer} targets are read only views over the
+   *         content, as are {@link ByteBuffer} targets of raw vectors
+   * @throws IOException
+   *           if the expression is truncated or not of the structure a
+   *           matrix, data frame or factor target expects
+   */
+  static Object decode (ByteBuffer c, Type t) throws IOException {
+    return decode (c, t, null);
+  }
+
+  /**
+   * @param c
+   *          encoded expression
+   * @param t
+   *          target type
+   * @param d
+   *          dictionary strings of character vectors and data frame columns
+   *          are shared through, null to decode each anew
+   * @return decoded value as {@link #decode(ByteBuffer, Type)}, attribute
+   *         free character vectors are decoded for {@code String[]} targets
+   *         as are factors, to their labels
+   * @throws IOException
+   *           if the expression is truncated or not of the structure a
+   *           matrix, data frame or factor target expects
+   */
+  static Object decode (ByteBuffer c, Type t, StringDictionary d) throws IOException {
+    if (t == RMatrix.class) return RMatrix.decode (c);
+    else if (t == DataFrame.class) return DataFrame.decode (c, d);
+    else if (t == Factor.class) return Factor.decode (c);
+    else if (t == LazySexp.class) return LazySexp.decode (c);
+    else if (t == SparseMatrix.class) return SparseMatrix.decode (c);
+    if (t != double[].class && t != int[].class && t != DoubleBuffer.class && t != IntBuffer.class && t != String[].class
+        && t != ByteBuffer.class)
+      return null;
+    if (!c.hasRemaining ()) return null;
+    int x = type (c);
+    if (t == String[].class && x == XT_ARRAY_INT && attributed (c) && attribute (c, "levels") != null)
+      return Factor.decode (c).labels ();
+    if (attributed (c)) return null;
+    ByteBuffer b;
+    try {
+      b = content (c);
+    } catch (IOException e) {
+      return null;
+    }
+    if (x == XT_ARRAY_DOUBLE && t == DoubleBuffer.class) return b.asDoubleBuffer ().asReadOnlyBuffer ();
+    else if (x == XT_ARRAY_INT && t == IntBuffer.class) return b.asIntBuffer ().asReadOnlyBuffer ();
+    else if (x == XT_ARRAY_DOUBLE && t == double[].class) {
+      DoubleBuffer v = b.asDoubleBuffer ();
+      double[] r = new double[v.remaining ()];
+      v.get (r);
+      return r;
+    } else if (x == XT_ARRAY_INT && t == int[].class) {
+      IntBuffer i = b.asIntBuffer ();
+      int[] r = new int[i.remaining ()];
+      i.get (r);
+      return r;
+    } else if (x == XT_ARRAY_STR && t == String[].class) return strings (b, d);
+    else if (x == XT_RAW && t == ByteBuffer.class) {
+      int l = b.remaining () < Integer.BYTES ? -1 : b.getInt (0);
+      if (l < 0 || l > b.remaining () - Integer.BYTES) return null;
+      return b.position (Integer.BYTES).limit (Integer.BYTES + l).slice ().asReadOnlyBuffer ();
+    } else return null;
+  }
+
+  /**
+   * @param t
+   *          target type
+   * @return whether a value decoded for the target type refers to the buffer
+   *         it was decoded from
+   */
+  static boolean views (Type t) {
+    return t == DoubleBuffer.class || t == IntBuffer.class || t == ByteBuffer.class || t == RMatrix.class || t == LazySexp.class;
+  }
+
+  /**
+   * @param t
+   *          expression type
+   * @param l
+   *          content length
+   * @return buffer sized for the expression with the header written
+   */
+  static ByteBuffer expression (int t, int l) {
+    ByteBuffer h = header (t, l);
+    return allocate (addExact (h.remaining (), l)).order (LITTLE_ENDIAN).put (h);
+  }
+
+  /**
+   * @param d
+   *          values
+   * @return encoded double vector
+   */
+  static ByteBuffer doubles (double[] d) {
+    ByteBuffer b = expression (XT_ARRAY_DOUBLE, multiplyExact (d.length, Double.BYTES));
+    b.asDoubleBuffer ().put (d);
+    return b.position (0);
+  }
+
+  /**
+   * @param i
+   *          values
+   * @return encoded integer vector
+   */
+  static ByteBuffer integers (int[] i) {
+    ByteBuffer b = expression (XT_ARRAY_INT, multiplyExact (i.length, Integer.BYTES));
+    b.asIntBuffer ().put (i);
+    return b.position (0);
+  }
+
+  /**
+   * @param d
+   *          values
+   * @param s
+   *          largest segment size in bytes
+   * @return header of the encoded double vector followed by its content in
+   *         segments, so the vector may exceed the limits of a single buffer
+   */
+  static List <ByteBuffer> doubles (double[] d, int s) {
+    List <ByteBuffer> b = new ArrayList <> ();
+    b.add (header (XT_ARRAY_DOUBLE, (long) d.length * Double.BYTES));
+    for (int o = 0, n; o < d.length; o += n) {
+      ByteBuffer c = allocate ((n = min (d.length - o, s / Double.BYTES)) * Double.BYTES).order (LITTLE_ENDIAN);
+      c.asDoubleBuffer ().put (d, o, n);
+      b.add (c);
+    }
+    return b;
+  }
+
+  /**
+   * @param i
+   *          values
+   * @param s
+   *          largest segment size in bytes
+   * @return header of the encoded integer vector followed by its content in
+   *         segments, so the vector may exceed the limits of a single buffer
+   */
+  static List <ByteBuffer> integers (int[] i, int s) {
+    List <ByteBuffer> b = new ArrayList <> ();
+    b.add (header (XT_ARRAY_INT, (long) i.length * Integer.BYTES));
+    for (int o = 0, n; o < i.length; o += n) {
+      ByteBuffer c = allocate ((n = min (i.length - o, s / Integer.BYTES)) * Integer.BYTES).order (LITTLE_ENDIAN);
+      c.asIntBuffer ().put (i, o, n);
+      b.add (c);
+    }
+    return b;
+  }
+
+  /**
+   * @param l
+   *          values, {@link #NA_INTEGER64} elements are NA
+   * @return encoded numeric vector of class integer64 as the bit64 package
+   *         stores it, each value's bits in a double, with the content in
+   *         segments of at most {@link #SEGMENT_SIZE} bytes
+   */
+  static Stream <ByteBuffer> integer64 (long[] l) {
+    List <ByteBuffer> c = new ArrayList <> ();
+    for (int o = 0, n; o < l.length; o += n) {
+      ByteBuffer b = allocate ((n = min (l.length - o, SEGMENT_SIZE / Long.BYTES)) * Long.BYTES).order (LITTLE_ENDIAN);
+      b.asLongBuffer ().put (l, o, n);
+      c.add (b);
+    }
+    return Expressions.expression (XT_ARRAY_DOUBLE, Map.of ("class", List.of (strings (new String[] { "integer64" }))), c);
+  }
+
+  /**
+   * @param e
+   *          numeric vector expression
+   * @return whether the vector is of class integer64
+   * @throws IOException
+   *           if the expression is truncated
+   */
+  static boolean integer64 (ByteBuffer e) throws IOException {
+    ByteBuffer k = attribute (e, "class");
+    return k != null && type (k) == XT_ARRAY_STR && Arrays.asList (strings (content (k))).contains ("integer64");
+  }
+
+  /**
+   * @param l
+   *          values
+   * @return encoded logical vector
+   */
+  static ByteBuffer logicals (boolean[] l) {
+    ByteBuffer b = expression (XT_ARRAY_BOOL, addExact (Integer.BYTES, addExact (l.length, 3)) & ~3).putInt (l.length);
+    for (boolean v : l)
+      b.put ((byte) (v ? 1 : 0));
+    while (b.hasRemaining ())
+      b.put (LOGICAL_PADDING);
+    return b.position (0);
+  }
+
+  /**
+   * @param l
+   *          values, null elements are NA
+   * @return encoded logical vector
+   */
+  static ByteBuffer logicals (Boolean[] l) {
+    ByteBuffer b = expression (XT_ARRAY_BOOL, addExact (Integer.BYTES, addExact (l.length, 3)) & ~3).putInt (l.length);
+    for (Boolean v : l)
+      b.put (v == null ? NA_LOGICAL : (byte) (v ? 1 : 0));
+    while (b.hasRemaining ())
+      b.put (LOGICAL_PADDING);
+    return b.position (0);
+  }
+
+  /**
+   * @param l
+   *          values
+   * @param s
+   *          largest segment size in bytes
+   * @return header of the encoded logical vector followed by its content in
+   *         segments, so the vector may exceed the limits of a single buffer
+   */
+  static List <ByteBuffer> logicals (boolean[] l, int s) {
+    Segments g = new Segments (XT_ARRAY_BOOL, Integer.BYTES + l.length + 3L & ~3, s).putInt (l.length);
+    for (boolean v : l)
+      g.put ((byte) (v ? 1 : 0));
+    return g.pad (LOGICAL_PADDING).buffers ();
+  }
+
+  /**
+   * @param l
+   *          values, null elements are NA
+   * @param s
+   *          largest segment size in bytes
+   * @return header of the encoded logical vector followed by its content in
+   *         segments, so the vector may exceed the limits of a single buffer
+   */
+  static List <ByteBuffer> logicals (Boolean[] l, int s) {
+    Segments g = new Segments (XT_ARRAY_BOOL, Integer.BYTES + l.length + 3L & ~3, s).putInt (l.length);
+    for (Boolean v : l)
+      g.put (v == null ? NA_LOGICAL : (byte) (v ? 1 : 0));
+    return g.pad (LOGICAL_PADDING).buffers ();
+  }
+
+  /**
+   * @param d
+   *          bytes between the position and the limit, sent as is; the
+   *          element count of a raw vector is a 32 bit field, a single buffer
+   *          never exceeds it
+   * @return encoded raw vector, the bytes are not copied
+   */
+  static Stream <ByteBuffer> raw (ByteBuffer d) {
+    int l = d.remaining ();
+    ByteBuffer h = header (XT_RAW, Integer.BYTES + (long) l + 3 & ~3);
+    ByteBuffer c = allocate (Integer.BYTES).order (LITTLE_ENDIAN).putInt (0, l);
+    return Stream.of (h, c, d.duplicate (), allocate ((4 - (l & 3)) & 3));
+  }
+
+  /**
+   * @param s
+   *          values, null elements are NA
+   * @return encoded character vector
+   */
+  static ByteBuffer strings (String[] s) {
+    byte[][] e = new byte[s.length][];
+    int l = 0;
+    for (int i = 0; i < s.length; i++)
+      l = addExact (l, (e[i] = s[i] == null ? new byte[] { NA_STRING } : s[i].getBytes (UTF_8)).length + 1);
+    ByteBuffer b = expression (XT_ARRAY_STR, addExact (l, 3) & ~3);
+    for (byte[] v : e)
+      b.put (v).put ((byte) 0);
+    while (b.hasRemaining ())
+      b.put (STRING_PADDING);
+    return b.position (0);
+  }
+
+  /**
+   * @param s
+   *          values, null elements are NA
+   * @param z
+   *          largest segment size in bytes
+   * @return header of the encoded character vector followed by its content in
+   *         segments, so the vector may exceed the limits of a single buffer
+   */
+  static List <ByteBuffer> strings (String[] s, int z) {
+    byte[][] e = new byte[s.length][];
+    long l = 0;
+    for (int i = 0; i < s.length; i++)
+      l += (e[i] = s[i] == null ? new byte[] { NA_STRING } : s[i].getBytes (UTF_8)).length + 1;
+    Segments g = new Segments (XT_ARRAY_STR, l + 3 & ~3, z);
+    for (byte[] v : e)
+      g.put (v).put ((byte) 0);
+    return g.pad (STRING_PADDING).buffers ();
+  }
+
+  /**
+   * @param c
+   *          content of a character vector
+   * @return values, NA as null
+   */
+  static String[] strings (ByteBuffer c) {
+    return strings (c, null);
+  }
+
+  /**
+   * @param c
+   *          content of a character vector
+   * @param d
+   *          dictionary values are shared through, null to decode each anew
+   * @return values, NA as null
+   */
+  static String[] strings (ByteBuffer c, StringDictionary d) {
+    List <String> s = new ArrayList <> ();
+    for (int p = c.position (), i = p; i < c.limit (); i++)
+      if (c.get (i) == 0) {
+        s.add (i - p == 1 && c.get (p) == NA_STRING ? null : d == null ? string (c, p, i - p) : d.get (c, p, i - p));
+        p = i + 1;
+      }
+    return s.toArray (new String[0]);
+  }
+
+  /**
+   * @param c
+   *          content of a logical vector
+   * @return values, NA as null
+   * @throws IOException
+   *           if the vector is truncated
+   */
+  static Boolean[] logicals (ByteBuffer c) throws IOException {
+    int n = c.remaining () < Integer.BYTES ? -1 : c.getInt (c.position ());
+    if (n < 0 || n > c.remaining () - Integer.BYTES) throw new IOException ("Truncated logical vector");
+    Boolean[] l = new Boolean[n];
+    for (int i = 0; i < l.length; i++) {
+      byte v = c.get (c.position () + Integer.BYTES + i);
+      l[i] = v == NA_LOGICAL ? null : v != 0;
+    }
+    return l;
+  }
+
+  /**
+   * @param c
+   *          buffer
+   * @param p
+   *          offset
+   * @param l
+   *          length
+   * @return UTF-8 decoded string
+   */
+  private static String string (ByteBuffer c, int p, int l) {
+    if (c.hasArray ()) return new String (c.array (), c.arrayOffset () + p, l, UTF_8);
+    byte[] b = new byte[l];
+    c.get (p, b);
+    return new String (b, UTF_8);
+  }
+}
@@ -25,25 +25,31 @@
  */
 package us.levk.rserve.client.protocol.commands;
 
-import static java.nio.ByteBuffer.allocate;
-import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.of;
 import static us.levk.rserve.client.protocol.Qap.CMD_assignSEXP;
-import static us.levk.rserve.client.protocol.Qap.sexp;
+import static us.levk.rserve.client.protocol.Qap.DT_SEXP;
+import static us.levk.rserve.client.protocol.Qap.header;
 import static us.levk.rserve.client.protocol.Qap.string;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Qap;
+
 /**
- * Assign command
+ * Assign command, primitive arrays and expressions are encoded directly
+ * rather than through the mapper, byte buffers are sent as raw vectors
+ * without copying. When written to a sink values going through the mapper
+ * are serialized once into a {@link SpooledOutputStream}, which holds them in
+ * pooled chunks and spills to a file only once they outgrow its memory
  * 
  * @author levk
  */
@@ -77,17 +83,66 @@ public class Assign implements Command <Void> {
    */
   @Override
   public Stream <ByteBuffer> encode (ObjectMapper m) throws IOException {
-    try (ByteArrayOutputStream b = new ByteArrayOutputStream ()) {
-      m.writeValue (b, value);
-      List <ByteBuffer> c = concat (string (name), sexp (b.toByteArray ())).collect (toList ());
-      return of (of (allocate (16).order (LITTLE_ENDIAN).putInt (0, CMD_assignSEXP).putInt (4, c.stream ().map (w -> {
-        return w.limit () - w.position ();
-      }).reduce (0, (x, y) -> {
-        return x + y;
-      }))), c.stream ()).flatMap (x -> x);
+    List <ByteBuffer> v = Expressions.encode (value, m);
+    return message (concat (string (name), concat (of (header (DT_SEXP, size (v))), v.stream ())));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Command#encode(com.fasterxml.jackson.
+   * databind.ObjectMapper,
+   * us.levk.rserve.client.protocol.commands.Command.Sink)
+   */
+  @Override
+  public void encode (ObjectMapper m, Sink s) throws IOException {
+    if (Expressions.direct (value)) {
+      Command.super.encode (m, s);
+      return;
+    }
+    SpooledOutputStream o = new SpooledOutputStream ();
+    try {
+      m.writeValue (o, value);
+      long l = o.count ();
+      for (Iterator <ByteBuffer> i = message (concat (string (name), of (header (DT_SEXP, l))), l).iterator (); i.hasNext ();)
+        s.write (i.next (), false);
+      o.drain (s, true);
+    } finally {
+      o.release ();
     }
   }
 
+  /**
+   * @param b
+   *          buffers
+   * @return total remaining
+   */
+  static long size (List <ByteBuffer> b) {
+    return b.stream ().mapToLong (x -> x.limit () - x.position ()).sum ();
+  }
+
+  /**
+   * @param p
+   *          parameters
+   * @return stream of encoded buffers
+   */
+  private static Stream <ByteBuffer> message (Stream <ByteBuffer> p) {
+    return message (p, 0);
+  }
+
+  /**
+   * @param p
+   *          parameters
+   * @param r
+   *          length of the parameters following those given
+   * @return stream of encoded buffers
+   */
+  private static Stream <ByteBuffer> message (Stream <ByteBuffer> p, long r) {
+    List <ByteBuffer> c = p.collect (toList ());
+    return concat (of (Qap.message (CMD_assignSEXP, size (c) + r)), c.stream ());
+  }
+
   /*
    * (non-Javadoc)
    * 
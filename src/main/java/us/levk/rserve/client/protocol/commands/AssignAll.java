@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.concat;
+import static java.util.stream.Stream.of;
+import static us.levk.rserve.client.protocol.Qap.CMD_eval;
+import static us.levk.rserve.client.protocol.Qap.DT_SEXP;
+import static us.levk.rserve.client.protocol.Qap.XT_HAS_ATTR;
+import static us.levk.rserve.client.protocol.Qap.XT_LANG_NOTAG;
+import static us.levk.rserve.client.protocol.Qap.XT_LIST_TAG;
+import static us.levk.rserve.client.protocol.Qap.XT_VECTOR;
+import static us.levk.rserve.client.protocol.Qap.header;
+import static us.levk.rserve.client.protocol.Qap.message;
+import static us.levk.rserve.client.protocol.Qap.symbol;
+import static us.levk.rserve.client.protocol.Vectors.strings;
+import static us.levk.rserve.client.protocol.commands.Assign.size;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.levk.rserve.client.protocol.Expressions;
+
+/**
+ * Assigns a number of variables at once, the values are sent as a single
+ * named list and unpacked into the global environment by evaluating
+ * {@code list2env(<list>, .GlobalEnv)} on the server. Each value is encoded
+ * on its own as {@link Assign} would, including spooling of those going
+ * through the mapper when written to a sink
+ * 
+ * @author levk
+ */
+public class AssignAll implements Command <Void> {
+
+  /**
+   * Values by name
+   */
+  private final Map <String, ?> values;
+
+  /**
+   * @param v
+   *          values by name
+   */
+  public AssignAll (Map <String, ?> v) {
+    values = v;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Command#encode(com.fasterxml.jackson.
+   * databind.ObjectMapper)
+   */
+  @Override
+  public Stream <ByteBuffer> encode (ObjectMapper m) throws IOException {
+    List <ByteBuffer> e = new ArrayList <> ();
+    for (Object v : values.values ())
+      e.addAll (Expressions.encode (v, m));
+    return concat (concat (head (size (e)), e.stream ()), symbol (".GlobalEnv"));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Command#encode(com.fasterxml.jackson.
+   * databind.ObjectMapper,
+   * us.levk.rserve.client.protocol.commands.Command.Sink)
+   */
+  @Override
+  public void encode (ObjectMapper m, Sink s) throws IOException {
+    List <List <ByteBuffer>> d = new ArrayList <> ();
+    List <SpooledOutputStream> o = new ArrayList <> ();
+    try {
+      long n = 0;
+      for (Object v : values.values ())
+        if (Expressions.direct (v)) {
+          List <ByteBuffer> b = Expressions.encode (v, m);
+          d.add (b);
+          o.add (null);
+          n += size (b);
+        } else {
+          SpooledOutputStream w = new SpooledOutputStream ();
+          d.add (null);
+          o.add (w);
+          m.writeValue (w, v);
+          n += w.count ();
+        }
+      for (Iterator <ByteBuffer> i = head (n).iterator (); i.hasNext ();)
+        s.write (i.next (), false);
+      for (int j = 0; j < d.size (); j++)
+        if (o.get (j) != null) o.get (j).drain (s, false);
+        else for (ByteBuffer b : d.get (j))
+          s.write (b, false);
+      for (Iterator <ByteBuffer> i = symbol (".GlobalEnv").iterator (); i.hasNext ();)
+        s.write (i.next (), !i.hasNext ());
+    } finally {
+      for (SpooledOutputStream w : o)
+        if (w != null) w.release ();
+    }
+  }
+
+  /**
+   * @param n
+   *          length of the encoded values
+   * @return buffers of the message up to the encoded values, the call being
+   *         closed by the {@code .GlobalEnv} symbol following them
+   */
+  private Stream <ByteBuffer> head (long n) {
+    List <ByteBuffer> a = concat (of (strings (values.keySet ().toArray (new String[0]))), symbol ("names")).collect (toList ());
+    List <ByteBuffer> f = symbol ("list2env").collect (toList ());
+    ByteBuffer t = header (XT_LIST_TAG, size (a));
+    ByteBuffer v = header (XT_VECTOR | XT_HAS_ATTR, t.remaining () + size (a) + n);
+    long l = size (f) + v.remaining () + t.remaining () + size (a) + n + size (symbol (".GlobalEnv").collect (toList ()));
+    ByteBuffer h = header (XT_LANG_NOTAG, l);
+    ByteBuffer c = header (DT_SEXP, h.remaining () + l);
+    return concat (concat (of (message (CMD_eval, c.remaining () + h.remaining () + l), c, h), f.stream ()),
+                   concat (of (v, t), a.stream ()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "AssignAll{" + values + "}";
+  }
+}
@@ -25,8 +25,11 @@
  */
 package us.levk.rserve.client.protocol.commands;
 
+import static us.levk.rserve.client.protocol.Qap.packet;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -47,6 +50,51 @@ public interface Command <T> {
    */
   Stream <ByteBuffer> encode (ObjectMapper m) throws IOException;
 
+  /**
+   * Receiver of an encoded command as it is produced
+   * 
+   * @author levk
+   */
+  @FunctionalInterface
+  static interface Sink {
+    /**
+     * @param b
+     *          next part of the command, valid only for the duration of the
+     *          call
+     * @param l
+     *          whether this is the last part
+     * @throws IOException
+     *           on write
+     */
+    void write (ByteBuffer b, boolean l) throws IOException;
+  }
+
+  /**
+   * @param m
+   *          mapper
+   * @param s
+   *          sink to write the encoded command to in order
+   * @throws IOException
+   *           on encoding failure or write
+   */
+  default void encode (ObjectMapper m, Sink s) throws IOException {
+    for (Iterator <ByteBuffer> i = encode (m).iterator (); i.hasNext ();) {
+      ByteBuffer b = i.next ();
+      s.write (b, !i.hasNext ());
+    }
+  }
+
+  /**
+   * @param r
+   *          response message
+   * @return content of the response to decode
+   * @throws IOException
+   *           on error response
+   */
+  default ByteBuffer content (ByteBuffer r) throws IOException {
+    return packet (r);
+  }
+
   /**
    * @param c
    *          content
@@ -60,4 +108,12 @@ public interface Command <T> {
     if (c == null || c.limit () <= c.position ()) return null;
     else throw new IOException ("Unexpected content for " + getClass ().getSimpleName () + " command");
   }
+
+  /**
+   * @return whether the decoded value may reference the content buffer, in
+   *         which case the transport must not reuse the buffer afterwards
+   */
+  default boolean retains () {
+    return false;
+  }
 }
@@ -32,6 +32,7 @@ import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.of;
 import static us.levk.rserve.client.protocol.Qap.CMD_readFile;
 import static us.levk.rserve.client.protocol.Qap.integer;
+import static us.levk.rserve.client.protocol.Qap.response;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -41,7 +42,8 @@ import java.util.stream.Stream;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * Command to read a buffer from the opened file
+ * Command to read a buffer from the opened file, the response carries the
+ * bytes read without a data header and is empty at the end of the file
  * 
  * @author levk
  */
@@ -67,6 +69,17 @@ public class Read implements Command <ByteBuffer> {
     }).reduce (0, (x, y) -> x + y))), n.stream ());
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Command#content(java.nio.ByteBuffer)
+   */
+  @Override
+  public ByteBuffer content (ByteBuffer r) throws IOException {
+    return response (r);
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -78,4 +91,14 @@ public class Read implements Command <ByteBuffer> {
   public ByteBuffer decode (ByteBuffer c, ObjectMapper m) throws IOException {
     return c;
   }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.commands.Command#retains()
+   */
+  @Override
+  public boolean retains () {
+    return true;
+  }
 }
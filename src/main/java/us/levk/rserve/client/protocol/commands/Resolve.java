@@ -27,6 +27,7 @@ package us.levk.rserve.client.protocol.commands;
 
 import static java.nio.ByteBuffer.allocate;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.Collections.synchronizedMap;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.of;
@@ -36,18 +37,44 @@ import static us.levk.rserve.client.protocol.Qap.string;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import us.levk.rserve.client.protocol.StringDictionary;
+import us.levk.rserve.client.protocol.Vectors;
 
 /**
- * Resolve command
+ * Resolve command, numeric vectors resolved to primitive arrays or buffers
+ * are copied or viewed directly rather than parsed by the mapper, as are
+ * character vectors resolved to string arrays, optionally deduplicated
  * 
  * @author levk
  */
 public class Resolve <T> implements Command <T> {
 
+  /**
+   * Number of readers cached
+   */
+  private static final int READER_CACHE_SIZE = 256;
+  /**
+   * Readers by mapper and target type, least recently used evicted first
+   */
+  @SuppressWarnings ("serial")
+  private static final Map <Entry <ObjectMapper, Type>, ObjectReader> READERS =
+      synchronizedMap (new LinkedHashMap <Entry <ObjectMapper, Type>, ObjectReader> (16, .75f, true) {
+        protected boolean removeEldestEntry (Entry <Entry <ObjectMapper, Type>, ObjectReader> e) {
+          return size () > READER_CACHE_SIZE;
+        }
+      });
+
   /**
    * Name
    */
@@ -56,6 +83,11 @@ public class Resolve <T> implements Command <T> {
    * Target type
    */
   private final Type type;
+  /**
+   * Capacity of the string dictionary per response, 0 if strings are not
+   * deduplicated
+   */
+  private final int dictionary;
 
   /**
    * @param n
@@ -64,8 +96,24 @@ public class Resolve <T> implements Command <T> {
    *          type
    */
   public Resolve (String n, Type t) {
+    this (n, t, 0);
+  }
+
+  /**
+   * @param n
+   *          name
+   * @param t
+   *          type
+   * @param d
+   *          maximum number of distinct strings shared between equal values of
+   *          a {@code String[]} or {@link us.levk.rserve.client.data.DataFrame}
+   *          target, 0 to decode each anew
+   */
+  public Resolve (String n, Type t, int d) {
+    if (d < 0) throw new IllegalArgumentException ("Negative dictionary capacity " + d);
     name = n;
     type = t;
+    dictionary = d;
   }
 
   /*
@@ -89,20 +137,48 @@ public class Resolve <T> implements Command <T> {
    * com.fasterxml.jackson.databind.ObjectMapper)
    */
   @Override
+  @SuppressWarnings ("unchecked")
   public T decode (ByteBuffer c, ObjectMapper m) throws IOException {
-    byte[] b;
-    int a, z;
-    if (c.hasArray ()) {
-      b = c.array ();
-      a = c.position ();
-      z = c.limit ();
-    } else {
-      b = new byte[c.limit () - c.position ()];
-      c.get (b);
-      a = 0;
-      z = b.length;
-    }
-    return m.readerFor (m.constructType (type)).readValue (b, a, z);
+    Object v = Vectors.decode (c, type, dictionary == 0 ? null : new StringDictionary (dictionary));
+    if (v != null) return (T) v;
+    return read (reader (m, type), c);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.commands.Command#retains()
+   */
+  @Override
+  public boolean retains () {
+    return Vectors.views (type);
+  }
+
+  /**
+   * @param r
+   *          reader
+   * @param c
+   *          encoded expression
+   * @param <T>
+   *          type
+   * @return value read
+   * @throws IOException
+   *           on read
+   */
+  static <T> T read (ObjectReader r, ByteBuffer c) throws IOException {
+    if (c.hasArray ()) return r.readValue (c.array (), c.arrayOffset () + c.position (), c.remaining ());
+    else return r.readValue (new ByteBufferBackedInputStream (c));
+  }
+
+  /**
+   * @param m
+   *          mapper
+   * @param t
+   *          target type
+   * @return cached reader
+   */
+  static ObjectReader reader (ObjectMapper m, Type t) {
+    return READERS.computeIfAbsent (new SimpleImmutableEntry <> (m, t), k -> m.readerFor (m.constructType (t)));
   }
 
   /*
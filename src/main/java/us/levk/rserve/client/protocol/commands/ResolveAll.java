@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static com.fasterxml.jackson.core.JsonToken.END_OBJECT;
+import static com.fasterxml.jackson.core.JsonToken.FIELD_NAME;
+import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.concat;
+import static java.util.stream.Stream.of;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.next;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.CMD_eval;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_STR;
+import static us.levk.rserve.client.protocol.Qap.XT_VECTOR;
+import static us.levk.rserve.client.protocol.Qap.string;
+import static us.levk.rserve.client.protocol.commands.Resolve.read;
+import static us.levk.rserve.client.protocol.commands.Resolve.reader;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Vectors;
+
+/**
+ * Resolves a number of names at once by evaluating a single named
+ * {@code list(...)} of them, each element of the result is decoded as
+ * {@link Resolve} would decode it alone: directly for the types
+ * {@link Vectors} supports, with the reader for its own target type otherwise
+ * 
+ * @author levk
+ */
+public class ResolveAll implements Command <Map <String, Object>> {
+
+  /**
+   * Target types by name
+   */
+  private final Map <String, Type> types;
+
+  /**
+   * @param t
+   *          target types by name
+   */
+  public ResolveAll (Map <String, Type> t) {
+    types = t;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Command#encode(com.fasterxml.jackson.
+   * databind.ObjectMapper)
+   */
+  @Override
+  public Stream <ByteBuffer> encode (ObjectMapper m) throws IOException {
+    List <ByteBuffer> n = string (types.keySet ().stream ().map (k -> {
+      return "`" + k.replace ("\\", "\\\\").replace ("`", "\\`") + "` = " + k;
+    }).collect (joining (", ", "list(", ")"))).collect (toList ());
+    return concat (of (allocate (16).order (LITTLE_ENDIAN).putInt (0, CMD_eval).putInt (4, n.stream ().map (b -> {
+      return b.limit () - b.position ();
+    }).reduce (0, (x, y) -> x + y))), n.stream ());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Command#decode(java.nio.ByteBuffer,
+   * com.fasterxml.jackson.databind.ObjectMapper)
+   */
+  @Override
+  public Map <String, Object> decode (ByteBuffer c, ObjectMapper m) throws IOException {
+    ByteBuffer n = type (c) == XT_VECTOR ? attribute (c, "names") : null;
+    if (n == null || type (n) != XT_ARRAY_STR) return parse (c, m);
+    Map <String, Object> r = new LinkedHashMap <> ();
+    ByteBuffer e = Expressions.content (c);
+    for (String k : Vectors.strings (Expressions.content (n))) {
+      ByteBuffer x = next (e);
+      Type t = types.get (k);
+      if (t != null) {
+        Object v = Vectors.decode (x, t);
+        r.put (k, v != null ? v : read (reader (m, t), x));
+      }
+    }
+    return r;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.commands.Command#retains()
+   */
+  @Override
+  public boolean retains () {
+    return types.values ().stream ().anyMatch (Vectors::views);
+  }
+
+  /**
+   * @param c
+   *          named list not laid out as a vector with names
+   * @param m
+   *          mapper
+   * @return values by name, each read with the reader for its own type
+   * @throws IOException
+   *           on read
+   */
+  private Map <String, Object> parse (ByteBuffer c, ObjectMapper m) throws IOException {
+    Map <String, Object> r = new LinkedHashMap <> ();
+    try (JsonParser p = c.hasArray () ? m.getFactory ().createParser (c.array (), c.arrayOffset () + c.position (), c.remaining ())
+                                      : m.getFactory ().createParser (new ByteBufferBackedInputStream (c))) {
+      if (p.nextToken () != START_OBJECT) throw JsonMappingException.from (p, "Expected a named list");
+      while (p.nextToken () == FIELD_NAME) {
+        String n = p.getCurrentName ();
+        Type t = types.get (n);
+        p.nextToken ();
+        if (t == null) p.skipChildren ();
+        else r.put (n, reader (m, t).readValue (p));
+      }
+      if (p.getCurrentToken () != END_OBJECT) throw JsonMappingException.from (p, "Unterminated named list");
+    }
+    return r;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString () {
+    return "ResolveAll{" + types + "}";
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_DOUBLE;
+import static us.levk.rserve.client.protocol.Qap.XT_ARRAY_INT;
+import static us.levk.rserve.client.protocol.Vectors.NA_INTEGER;
+import static us.levk.rserve.client.protocol.Vectors.NA_INTEGER64;
+import static us.levk.rserve.client.protocol.Vectors.NA_REAL;
+import static us.levk.rserve.client.protocol.Vectors.integer64;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Vectors;
+
+/**
+ * Resolves a numeric or integer vector into a destination supplied by the
+ * caller, which is returned once filled. Arrays are filled whole, buffers
+ * between their position and limit with the position left as is; the
+ * vector length must match. Integer vectors widen into double and long
+ * destinations with missing values widened to {@code NA_real_} and the
+ * integer64 {@code NA}, numeric vectors narrow into long destinations only if
+ * integral or of class integer64. The destination is left untouched if the
+ * vector doesn't fit it
+ * 
+ * @author levk
+ */
+public class ResolveInto <T> extends Resolve <T> {
+
+  /**
+   * Destination
+   */
+  private final T destination;
+
+  /**
+   * @param n
+   *          name
+   * @param d
+   *          destination, a {@code double[]}, {@code int[]}, {@code long[]}
+   *          or a {@link DoubleBuffer}, {@link IntBuffer} or
+   *          {@link LongBuffer}
+   */
+  public ResolveInto (String n, T d) {
+    super (n, d.getClass ());
+    if (!(d instanceof double[] || d instanceof int[] || d instanceof long[] || d instanceof DoubleBuffer
+          || d instanceof IntBuffer || d instanceof LongBuffer))
+      throw new IllegalArgumentException ("Unsupported destination " + d.getClass ().getName ());
+    destination = d;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.protocol.commands.Resolve#decode(java.nio.ByteBuffer,
+   * com.fasterxml.jackson.databind.ObjectMapper)
+   */
+  @Override
+  public T decode (ByteBuffer c, ObjectMapper m) throws IOException {
+    int t = c.hasRemaining () ? type (c) : -1;
+    if (t != XT_ARRAY_DOUBLE && t != XT_ARRAY_INT) throw new IOException ("Expected a numeric or integer vector");
+    ByteBuffer v = Expressions.content (c);
+    int l = v.remaining () / (t == XT_ARRAY_DOUBLE ? Double.BYTES : Integer.BYTES);
+    int s = length (destination);
+    if (l != s) throw new IOException ("Expected " + s + " values but got " + l);
+
+    if (destination instanceof double[] || destination instanceof DoubleBuffer) {
+      DoubleBuffer d = destination instanceof double[] ? DoubleBuffer.wrap ((double[]) destination)
+                                                       : ((DoubleBuffer) destination).duplicate ();
+      if (t == XT_ARRAY_DOUBLE) d.put (v.asDoubleBuffer ());
+      else for (int i = 0; i < l; i++) {
+        int x = v.getInt (i * Integer.BYTES);
+        d.put (x == NA_INTEGER ? NA_REAL : x);
+      }
+    } else if (destination instanceof int[] || destination instanceof IntBuffer) {
+      if (t != XT_ARRAY_INT) throw new IOException ("Expected an integer vector");
+      (destination instanceof int[] ? IntBuffer.wrap ((int[]) destination) : ((IntBuffer) destination).duplicate ())
+          .put (v.asIntBuffer ());
+    } else {
+      LongBuffer d = destination instanceof long[] ? LongBuffer.wrap ((long[]) destination)
+                                                   : ((LongBuffer) destination).duplicate ();
+      if (t == XT_ARRAY_INT) for (int i = 0; i < l; i++) {
+        int x = v.getInt (i * Integer.BYTES);
+        d.put (x == NA_INTEGER ? NA_INTEGER64 : x);
+      }
+      else if (integer64 (c)) d.put (v.asLongBuffer ());
+      else {
+        for (int i = 0; i < l; i++) {
+          double x = v.getDouble (i * Double.BYTES);
+          if (x != (long) x) throw new IOException ("Value " + x + " at " + i + " is not integral");
+        }
+        for (int i = 0; i < l; i++)
+          d.put ((long) v.getDouble (i * Double.BYTES));
+      }
+    }
+    return destination;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.protocol.commands.Resolve#retains()
+   */
+  @Override
+  public boolean retains () {
+    return false;
+  }
+
+  /**
+   * @param d
+   *          destination
+   * @return number of values the destination takes
+   */
+  private static int length (Object d) {
+    if (d instanceof double[]) return ((double[]) d).length;
+    else if (d instanceof int[]) return ((int[]) d).length;
+    else if (d instanceof long[]) return ((long[]) d).length;
+    else return ((Buffer) d).remaining ();
+  }
+}
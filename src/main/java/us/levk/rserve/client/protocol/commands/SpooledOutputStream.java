@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static java.lang.Math.min;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import us.levk.rserve.client.protocol.commands.Command.Sink;
+import us.levk.rserve.client.tools.nio.BufferPool;
+
+/**
+ * Output kept in pooled chunks until it outgrows the memory threshold, the
+ * rest is spilled to a temporary file. The value is thus serialized once and
+ * its length known before any of it is handed to the sink. The threshold
+ * defaults to {@link #MEMORY} bytes and is set with the
+ * {@value #MEMORY_PROPERTY} system property
+ * 
+ * @author levk
+ */
+class SpooledOutputStream extends OutputStream {
+
+  /**
+   * Size of the chunks output is held in and handed to the sink in
+   */
+  static final int CHUNK_SIZE = 1 << 16;
+  /**
+   * System property overriding the bytes held in memory before spilling
+   */
+  static final String MEMORY_PROPERTY = "us.levk.rserve.client.spool.memory";
+  /**
+   * Default bytes held in chunks before spilling to a file
+   */
+  static final long MEMORY = 1L << 28;
+  /**
+   * Chunks, those released beyond the retained depth are left to the
+   * collector
+   */
+  private static final BufferPool CHUNKS = new BufferPool (16, CHUNK_SIZE);
+
+  /**
+   * Chunks held before spilling
+   */
+  private final long limit;
+  /**
+   * Chunks held in memory
+   */
+  private final List <ByteBuffer> chunks = new ArrayList <> ();
+  /**
+   * Spill file, null until memory is exhausted
+   */
+  private FileChannel file;
+  /**
+   * Chunk staging writes to the spill file
+   */
+  private ByteBuffer stage;
+  /**
+   * Bytes written
+   */
+  private long count;
+  /**
+   * Whether writing is done
+   */
+  private boolean closed;
+
+  /**
+   * Spools up to the configured threshold in memory
+   */
+  SpooledOutputStream () {
+    this (Long.getLong (MEMORY_PROPERTY, MEMORY));
+  }
+
+  /**
+   * @param m
+   *          bytes held in memory before spilling to a file
+   */
+  SpooledOutputStream (long m) {
+    limit = (m + CHUNK_SIZE - 1) / CHUNK_SIZE;
+  }
+
+  /**
+   * @return bytes written
+   */
+  long count () {
+    return count;
+  }
+
+  /**
+   * @return whether output was spilled to a file
+   */
+  boolean spilled () {
+    return file != null;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.OutputStream#write(int)
+   */
+  @Override
+  public void write (int b) throws IOException {
+    room ().put ((byte) b);
+    count++;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.OutputStream#write(byte[], int, int)
+   */
+  @Override
+  public void write (byte[] b, int o, int l) throws IOException {
+    for (int n; l > 0; o += n, l -= n, count += n) {
+      ByteBuffer c = room ();
+      c.put (b, o, n = min (l, c.remaining ()));
+    }
+  }
+
+  /**
+   * @return chunk with room to write to
+   * @throws IOException
+   *           on spill
+   */
+  private ByteBuffer room () throws IOException {
+    if (closed) throw new IOException ("Stream closed");
+    else if (stage != null) {
+      if (!stage.hasRemaining ()) spill ();
+      return stage;
+    }
+    ByteBuffer c = chunks.isEmpty () ? null : chunks.get (chunks.size () - 1);
+    if (c != null && c.hasRemaining ()) return c;
+    else if (chunks.size () < limit) chunks.add (c = CHUNKS.acquire (CHUNK_SIZE));
+    else {
+      file = FileChannel.open (Files.createTempFile ("rserve", ".spool"), READ, WRITE, DELETE_ON_CLOSE);
+      c = stage = CHUNKS.acquire (CHUNK_SIZE);
+    }
+    return c;
+  }
+
+  /**
+   * Writes the staged bytes to the spill file
+   * 
+   * @throws IOException
+   *           on write
+   */
+  private void spill () throws IOException {
+    for (stage.flip (); stage.hasRemaining ();)
+      file.write (stage);
+    stage.clear ();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.OutputStream#close()
+   */
+  @Override
+  public void close () throws IOException {
+    if (!closed && stage != null) spill ();
+    closed = true;
+  }
+
+  /**
+   * @param s
+   *          sink to hand the output to in order
+   * @param l
+   *          whether the output ends the command
+   * @throws IOException
+   *           on read of the spill file or write to the sink
+   */
+  void drain (Sink s, boolean l) throws IOException {
+    close ();
+    if (chunks.isEmpty () && file == null) s.write (allocate (0), l);
+    for (int i = 0; i < chunks.size (); i++)
+      s.write (chunks.get (i).flip (), l && file == null && i == chunks.size () - 1);
+    if (file != null) for (long p = 0, z = file.size (); p < z;) {
+      stage.clear ().limit ((int) min (CHUNK_SIZE, z - p));
+      while (stage.hasRemaining ())
+        if (file.read (stage, p + stage.position ()) < 0) throw new IOException ("Spill file truncated");
+      p += stage.flip ().remaining ();
+      s.write (stage, l && p == z);
+    }
+  }
+
+  /**
+   * Returns the chunks to the pool and removes the spill file
+   * 
+   * @throws IOException
+   *           on removal
+   */
+  void release () throws IOException {
+    closed = true;
+    chunks.forEach (CHUNKS::release);
+    chunks.clear ();
+    if (stage != null) CHUNKS.release (stage);
+    stage = null;
+    if (file != null) file.close ();
+    file = null;
+  }
+}
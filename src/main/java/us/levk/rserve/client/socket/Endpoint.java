@@ -0,0 +1,263 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.socket;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static us.levk.rserve.client.protocol.Qap.HEADER_LENGTH;
+import static us.levk.rserve.client.protocol.Qap.ID_LENGTH;
+import static us.levk.rserve.client.protocol.Qap.identify;
+import static us.levk.rserve.client.protocol.Qap.length;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.protocol.commands.Command;
+
+/**
+ * Socket client endpoint speaking QAP1 directly over a non-blocking channel.
+ * A failure once part of a command was written closes the channel and fails
+ * the commands queued after it, one encoding a command before any of it was
+ * written fails only that command
+ * 
+ * @author levk
+ */
+public class Endpoint implements Client {
+
+  /**
+   * Mapper
+   */
+  private final ObjectMapper mapper;
+  /**
+   * Async provider
+   */
+  private final ExecutorService executor;
+  /**
+   * Socket channel
+   */
+  private SocketChannel channel;
+  /**
+   * Readiness selector for the channel
+   */
+  private Selector selector;
+  /**
+   * Small parts of a command gathered before writing
+   */
+  private final ByteBuffer staging = allocate (1 << 13);
+  /**
+   * Whether any part of the current command was handed to the channel
+   */
+  private boolean sent;
+  /**
+   * Failure that left the channel out of step with the server, null while
+   * usable
+   */
+  private volatile Exception broken;
+  /**
+   * Command queue
+   */
+  private final AtomicReference <CompletableFuture <?>> queue = new AtomicReference <> (completedFuture (null));
+
+  /**
+   * @param m
+   *          mapper
+   * @param e
+   *          executor
+   */
+  public Endpoint (ObjectMapper m, ExecutorService e) {
+    mapper = m;
+    executor = e;
+  }
+
+  /**
+   * @param c
+   *          connected channel
+   * @throws IOException
+   *           on read or unsupported server identification
+   */
+  public void connect (SocketChannel c) throws IOException {
+    channel = c;
+    selector = Selector.open ();
+    c.configureBlocking (false).register (selector, 0);
+    ByteBuffer i = allocate (ID_LENGTH);
+    fill (i);
+    i.flip ();
+    identify (i);
+  }
+
+  /**
+   * @return next message, whole in a single buffer
+   * @throws IOException
+   *           on read or if the message does not fit a single buffer
+   */
+  private ByteBuffer read () throws IOException {
+    ByteBuffer h = allocate (HEADER_LENGTH).order (LITTLE_ENDIAN);
+    fill (h);
+    h.flip ();
+    ByteBuffer b = allocate (HEADER_LENGTH + length (h)).order (LITTLE_ENDIAN);
+    fill (b.put (h));
+    b.flip ();
+    return b;
+  }
+
+  /**
+   * @param b
+   *          buffer to fill up to its limit
+   * @throws IOException
+   *           on read or if the server hangs up
+   */
+  private void fill (ByteBuffer b) throws IOException {
+    for (int n; b.hasRemaining ();)
+      if ((n = channel.read (b)) < 0) throw new EOFException ("Connection closed by server");
+      else if (n == 0) await (OP_READ);
+  }
+
+  /**
+   * @param b
+   *          buffers to write in order
+   * @throws IOException
+   *           on write
+   */
+  private void write (ByteBuffer[] b) throws IOException {
+    sent = true;
+    for (int i = 0; i < b.length;)
+      if (!b[i].hasRemaining ()) i++;
+      else if (channel.write (b, i, b.length - i) == 0) await (OP_WRITE);
+  }
+
+  /**
+   * @param b
+   *          next part of a command, parts small enough are staged and
+   *          written along with the following ones
+   * @param l
+   *          whether this is the last part
+   * @throws IOException
+   *           on write
+   */
+  private void write (ByteBuffer b, boolean l) throws IOException {
+    if (b.remaining () > staging.remaining ()) flush ();
+    if (b.remaining () > staging.remaining ()) write (new ByteBuffer[] { b });
+    else staging.put (b);
+    if (l) flush ();
+  }
+
+  /**
+   * @throws IOException
+   *           on write
+   */
+  private void flush () throws IOException {
+    write (new ByteBuffer[] { staging.flip () });
+    staging.clear ();
+  }
+
+  /**
+   * @param o
+   *          operation to wait readiness for
+   * @throws IOException
+   *           on select
+   */
+  private void await (int o) throws IOException {
+    channel.keyFor (selector).interestOps (o);
+    selector.select ();
+    selector.selectedKeys ().clear ();
+  }
+
+  /**
+   * Closes the channel once part of an exchange failed, as the rest of the
+   * exchange can no longer be told apart from the next one; commands queued
+   * after are failed
+   * 
+   * @param e
+   *          cause
+   */
+  private void abandon (Exception e) {
+    broken = e;
+    try {
+      close ();
+    } catch (IOException x) {
+      e.addSuppressed (x);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close () throws IOException {
+    try {
+      channel.close ();
+    } finally {
+      selector.close ();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * us.levk.rserve.client.Client#execute(us.levk.rserve.client.protocol.commands.
+   * Command)
+   */
+  @Override
+  public <T> CompletableFuture <T> execute (Command <T> c) {
+    CompletableFuture <T> r = new CompletableFuture <> ();
+
+    queue.getAndUpdate (q -> q.thenRunAsync ( () -> {
+      try {
+        if (broken != null) throw new IOException ("Session closed after a failed exchange", broken);
+        staging.clear ();
+        sent = false;
+        ByteBuffer m;
+        try {
+          c.encode (mapper, this::write);
+          m = read ();
+        } catch (Exception e) {
+          if (sent) abandon (e);
+          throw e;
+        }
+        r.complete (c.decode (c.content (m), mapper));
+      } catch (Exception e) {
+        r.completeExceptionally (e);
+      }
+    }, executor));
+
+    return r;
+  }
+}
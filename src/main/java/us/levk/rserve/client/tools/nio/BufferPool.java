@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.tools.nio;
+
+import static java.nio.ByteBuffer.allocateDirect;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of direct buffers in power of two capacities
+ * 
+ * @author levk
+ */
+public class BufferPool {
+
+  /**
+   * Largest capacity retained in the pool
+   */
+  private final int max;
+  /**
+   * Number of buffers retained per capacity
+   */
+  private final int depth;
+  /**
+   * Released buffers by capacity
+   */
+  private final Map <Integer, Queue <ByteBuffer>> free = new ConcurrentHashMap <> ();
+
+  /**
+   * @param d
+   *          number of buffers retained per capacity
+   * @param m
+   *          largest capacity retained, larger buffers are left to the
+   *          collector on release
+   */
+  public BufferPool (int d, int m) {
+    depth = d;
+    max = m;
+  }
+
+  /**
+   * @param n
+   *          minimum capacity
+   * @return cleared buffer with at least the capacity requested
+   */
+  public ByteBuffer acquire (int n) {
+    if (n > 1 << 30) return allocateDirect (n);
+    int c = n <= 1 ? 1 : Integer.highestOneBit (n - 1) << 1;
+    Queue <ByteBuffer> q = free.get (c);
+    ByteBuffer b = q == null ? null : q.poll ();
+    return b == null ? allocateDirect (c) : b;
+  }
+
+  /**
+   * @param b
+   *          buffer being filled
+   * @param n
+   *          minimum capacity
+   * @return the buffer if it has enough capacity, otherwise a larger buffer
+   *         with the content written so far, in which case the original is
+   *         released
+   */
+  public ByteBuffer grow (ByteBuffer b, int n) {
+    if (b.capacity () >= n) return b;
+    b.flip ();
+    ByteBuffer g = acquire (n).put (b);
+    release (b);
+    return g;
+  }
+
+  /**
+   * @param b
+   *          buffer no longer referenced by the caller
+   */
+  public void release (ByteBuffer b) {
+    int c = b.capacity ();
+    if (b.isDirect () && c <= max && Integer.bitCount (c) == 1)
+      free.computeIfAbsent (c, x -> new ArrayBlockingQueue <> (depth)).offer (b.clear ());
+  }
+}
@@ -25,17 +25,18 @@
  */
 package us.levk.rserve.client.websocket;
 
-import static java.lang.Math.min;
+import static java.lang.Math.max;
+import static java.nio.ByteBuffer.allocate;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
-import static java.util.Optional.ofNullable;
-import static java.util.stream.IntStream.range;
 import static javax.websocket.CloseReason.CloseCodes.NORMAL_CLOSURE;
-import static us.levk.rserve.client.protocol.Qap.packet;
+import static us.levk.rserve.client.protocol.Qap.HEADER_LENGTH;
+import static us.levk.rserve.client.protocol.Qap.length;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Iterator;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -51,6 +52,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import us.levk.rserve.client.Client;
 import us.levk.rserve.client.protocol.commands.Command;
+import us.levk.rserve.client.tools.nio.BufferPool;
 
 /**
  * Websocket client endpoint
@@ -60,6 +62,13 @@ import us.levk.rserve.client.protocol.commands.Command;
 @ClientEndpoint
 public class Endpoint implements Client {
 
+  /**
+   * Reassembly buffers shared by all endpoints, responses larger than a few
+   * megabytes are reassembled in buffers left to the collector so the direct
+   * memory retained stays bounded regardless of the number of sessions
+   */
+  private static final BufferPool BUFFERS = new BufferPool (4, 1 << 21);
+
   /**
    * Mapper
    */
@@ -68,23 +77,66 @@ public class Endpoint implements Client {
    * Async provider
    */
   private final ExecutorService executor;
+  /**
+   * Whether commands are sent without waiting for the preceding responses
+   */
+  private final boolean pipelined;
   /**
    * Websocket session
    */
   private Session session;
   /**
-   * Current command
+   * Handshake promise
    */
-  private Command <?> current;
+  private final CompletableFuture <Void> handshake = new CompletableFuture <> ();
   /**
-   * Receiver for the current command result
+   * Commands sent and awaiting response, in the order sent
    */
-  private final AtomicReference <CompletableFuture <?>> receiver =
-      new AtomicReference <> (new CompletableFuture <Void> ());
+  private final Queue <Outstanding <?>> outstanding = new ConcurrentLinkedQueue <> ();
   /**
    * Command queue
    */
-  private final AtomicReference <CompletableFuture <?>> queue = new AtomicReference <> (receiver.get ());
+  private final AtomicReference <CompletableFuture <?>> queue = new AtomicReference <> (handshake);
+  /**
+   * Response being reassembled from partial messages
+   */
+  private ByteBuffer assembly;
+
+  /**
+   * Command awaiting response
+   * 
+   * @author levk
+   */
+  private class Outstanding <T> {
+    /**
+     * Command
+     */
+    private final Command <T> command;
+    /**
+     * Receiver for the command result
+     */
+    private final CompletableFuture <T> receiver = new CompletableFuture <> ();
+
+    /**
+     * @param c
+     *          command
+     */
+    private Outstanding (Command <T> c) {
+      command = c;
+    }
+
+    /**
+     * @param i
+     *          response
+     */
+    private void receive (ByteBuffer i) {
+      try {
+        receiver.complete (command.decode (command.content (i), mapper));
+      } catch (Exception e) {
+        receiver.completeExceptionally (e);
+      }
+    }
+  }
 
   /**
    * @param m
@@ -93,8 +145,22 @@ public class Endpoint implements Client {
    *          executor
    */
   public Endpoint (ObjectMapper m, ExecutorService e) {
+    this (m, e, false);
+  }
+
+  /**
+   * @param m
+   *          mapper
+   * @param e
+   *          executor
+   * @param p
+   *          whether to send commands without waiting for the preceding
+   *          responses
+   */
+  public Endpoint (ObjectMapper m, ExecutorService e, boolean p) {
     mapper = m;
     executor = e;
+    pipelined = p;
   }
 
   /**
@@ -115,20 +181,80 @@ public class Endpoint implements Client {
   @OnMessage
   public void handshake (String w) throws IOException {
     if (!HANDSHAKE_PATTERN.matcher (w).matches ()) throw new IOException ("Unsupported handshake wagon " + w);
-    receiver.getAndSet (null).complete (null);
+    handshake.complete (null);
   }
 
   /**
    * @param i
    *          input
    * @throws IOException
-   *           on read or decoding failure
+   *           on unsolicited response
    */
-  @SuppressWarnings ("unchecked")
-  @OnMessage
   public void receive (ByteBuffer i) throws IOException {
-    Object v = current.decode (packet (i.order (LITTLE_ENDIAN)), mapper);
-    ((CompletableFuture <Object>) receiver.getAndSet (null)).complete (v);
+    receive (i, true);
+  }
+
+  /**
+   * @param i
+   *          partial input
+   * @param l
+   *          whether this is the last part of the message
+   * @throws IOException
+   *           on malformed or unsolicited response
+   */
+  @OnMessage
+  public void receive (ByteBuffer i, boolean l) throws IOException {
+    i.order (LITTLE_ENDIAN);
+    ByteBuffer a = assembly;
+    if (a == null) {
+      int s = i.remaining () < HEADER_LENGTH ? HEADER_LENGTH : HEADER_LENGTH + length (i);
+      if (i.remaining () == s) {
+        dispatch (i, false);
+        return;
+      } else a = BUFFERS.acquire (max (i.remaining (), s)).order (LITTLE_ENDIAN);
+    } else a = BUFFERS.grow (a, a.position () + i.remaining ()).order (LITTLE_ENDIAN);
+    a.put (i);
+
+    if (a.position () >= HEADER_LENGTH) {
+      int s = HEADER_LENGTH + length (a.duplicate ().order (LITTLE_ENDIAN).position (0));
+      if (a.position () < s) a = BUFFERS.grow (a, s).order (LITTLE_ENDIAN);
+      else if (a.position () == s) {
+        assembly = null;
+        dispatch (a.flip (), true);
+        return;
+      } else {
+        assembly = null;
+        BUFFERS.release (a);
+        throw new IOException ("Response overruns its length of " + s + " bytes");
+      }
+    }
+
+    if (l) {
+      assembly = null;
+      BUFFERS.release (a);
+      throw new IOException ("Truncated response");
+    } else assembly = a;
+  }
+
+  /**
+   * @param i
+   *          complete response
+   * @param p
+   *          whether the response buffer is pooled, otherwise it belongs to
+   *          the container
+   * @throws IOException
+   *           on unsolicited response
+   */
+  private void dispatch (ByteBuffer i, boolean p) throws IOException {
+    Outstanding <?> o = outstanding.poll ();
+    if (o == null) {
+      if (p) BUFFERS.release (i);
+      throw new IOException ("Unsolicited response");
+    } else if (!o.command.retains ()) {
+      o.receive (i);
+      if (p) BUFFERS.release (i);
+    } else if (p) o.receive (i);
+    else o.receive (allocate (i.remaining ()).order (LITTLE_ENDIAN).put (i).flip ());
   }
 
   /**
@@ -137,7 +263,10 @@ public class Endpoint implements Client {
    */
   @OnError
   public void handle (Throwable e) {
-    ofNullable (receiver.getAndSet (null)).ifPresent (r -> r.completeExceptionally (e));
+    assembly = null;
+    handshake.completeExceptionally (e);
+    for (Outstanding <?> o; (o = outstanding.poll ()) != null;)
+      o.receiver.completeExceptionally (e);
   }
 
   /*
@@ -160,6 +289,37 @@ public class Endpoint implements Client {
       handle (new IOException ("Unable to fulfil request: " + r.getReasonPhrase ()));
   }
 
+  /**
+   * @param o
+   *          command to send
+   */
+  private void send (Outstanding <?> o) {
+    try {
+      handshake.join ();
+      outstanding.add (o);
+      o.command.encode (mapper, (b, l) -> {
+        for (int p = b.position (), z = b.limit (), s = 1 << 18;; p += s)
+          if (z - p <= s) {
+            session.getBasicRemote ().sendBinary (b.duplicate ().position (p).slice (), l);
+            break;
+          } else session.getBasicRemote ().sendBinary (b.duplicate ().position (p).limit (p + s).slice (), false);
+      });
+    } catch (Exception e) {
+      outstanding.remove (o);
+      o.receiver.completeExceptionally (e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see us.levk.rserve.client.Client#pipelined()
+   */
+  @Override
+  public boolean pipelined () {
+    return pipelined;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -168,27 +328,16 @@ public class Endpoint implements Client {
    */
   @Override
   public <T> CompletableFuture <T> execute (Command <T> c) {
-    CompletableFuture <T> r = new CompletableFuture <> ();
+    Outstanding <T> o = new Outstanding <> (c);
 
-    queue.getAndUpdate (q -> q.thenRunAsync ( () -> {
-      try {
-        receiver.set (r);
-        for (Iterator <ByteBuffer> i = (current = c).encode (mapper).flatMap (b -> {
-          int a = b.position (), z = b.limit (), s = 1 << 18;
-          return range (0, 1 + (z - a) / s).map (p -> a + s * p).mapToObj (p -> {
-            b.position (p).limit (min (p + s, z));
-            return b.slice ();
-          });
-        }).iterator ();i.hasNext ();) {
-          ByteBuffer b = i.next ();
-          session.getBasicRemote ().sendBinary (b, !i.hasNext ());
-        }
-      } catch (Exception e) {
-        current = null;
-        receiver.getAndSet (null).completeExceptionally (e);
-      }
-    }, executor));
+    queue.getAndUpdate (q -> {
+      CompletableFuture <?> s = q.handleAsync ( (x, e) -> {
+        send (o);
+        return null;
+      }, executor);
+      return pipelined ? s : s.thenCompose (x -> o.receiver.handle ( (y, e) -> null));
+    });
 
-    return r;
+    return o.receiver;
   }
 }
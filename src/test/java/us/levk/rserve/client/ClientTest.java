@@ -25,14 +25,27 @@
  */
 package us.levk.rserve.client;
 
+import static java.lang.Math.min;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Paths.get;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -42,8 +55,13 @@ import javax.websocket.RemoteEndpoint.Basic;
 import org.junit.Test;
 
 import us.levk.jackson.rserve.RserveMapper;
+import us.levk.rserve.client.data.SparseMatrix;
+import us.levk.rserve.client.mocks.RecordingClientMock;
+import us.levk.rserve.client.mocks.RecordingRemoteMock;
 import us.levk.rserve.client.mocks.StreamingMatchingRemoteMock;
 import us.levk.rserve.client.mocks.WebSocketContainerMock;
+import us.levk.rserve.client.protocol.commands.Evaluate;
+import us.levk.rserve.client.protocol.commands.Read;
 import us.levk.rserve.client.websocket.Endpoint;
 
 public class ClientTest implements Streams {
@@ -65,6 +83,97 @@ public class ClientTest implements Streams {
     return n.apply (w).get (10, TimeUnit.SECONDS);
   }
 
+  @Test
+  public void assignChunkedOneChunkAtATime () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Void> p = c.assignChunked ("x", new double[] { 1, 2, 3, 4, 5 }, 2);
+    assertThat (c.commands.toString (), is ("[Evaluate{`x` <- vector ('numeric', 5)}]"));
+    c.next (null);
+    assertThat (c.commands.size (), is (2));
+    String h = c.commands.get (1).toString ().replaceAll ("Assign\\{(.*)=.*", "$1");
+    assertThat (h.startsWith (Client.CHUNK_NAME + "."), is (true));
+    c.next (null);
+    assertThat (c.commands.get (2).toString (), is ("Evaluate{`x`[1:2] <- " + h + "; rm (" + h + ")}"));
+    for (int i = 0; i < 4; i++)
+      c.next (null);
+    assertThat (c.commands.size (), is (7));
+    assertThat (c.commands.get (6).toString (), is ("Evaluate{`x`[5:5] <- " + h + "; rm (" + h + ")}"));
+    c.next (null);
+    assertThat (c.commands.get (7).toString (), is ("Evaluate{suppressWarnings (rm (" + h + "))}"));
+    c.next (null);
+    assertNull (p.get (10, SECONDS));
+  }
+
+  @Test
+  public void assignChunkedPipelinedSplices () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    c.pipelined = true;
+    c.assignChunked ("x", new int[] { 1, 2, 3 }, 2);
+    c.next (null);
+    assertThat (c.commands.size (), is (3));
+    assertThat (c.commands.get (2).toString ().endsWith ("; rm (" + c.commands.get (1).toString ().replaceAll ("Assign\\{(.*)=.*", "$1") + ")}"),
+                is (true));
+  }
+
+  @Test
+  public void assignChunkedUniqueTemporary () {
+    RecordingClientMock c = new RecordingClientMock ();
+    c.assignChunked ("x", new int[] { 1 }, 1);
+    c.assignChunked ("y", new int[] { 1 }, 1);
+    c.next (null);
+    c.next (null);
+    String x = c.commands.get (2).toString (), y = c.commands.get (3).toString ();
+    assertThat (x.replaceAll ("Assign\\{(.*)=.*", "$1").equals (y.replaceAll ("Assign\\{(.*)=.*", "$1")), is (false));
+  }
+
+  @Test
+  public void assignChunkedRemovesTemporaryOnFailure () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Void> p = c.assignChunked ("x", new int[] { 1, 2, 3 }, 2);
+    c.next (null);
+    c.fail (new IOException ("boom"));
+    assertThat (c.commands.size (), is (3));
+    assertThat (c.commands.get (2).toString ().startsWith ("Evaluate{suppressWarnings (rm (" + Client.CHUNK_NAME), is (true));
+    assertThat (p.isDone (), is (false));
+    c.next (null);
+    try {
+      p.get (10, SECONDS);
+      fail ();
+    } catch (ExecutionException e) {
+      assertThat (e.getCause ().getMessage (), is ("boom"));
+    }
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void assignChunkedEmptyChunk () throws Throwable {
+    try {
+      new RecordingClientMock ().assignChunked ("x", new int[1], 0).get ();
+    } catch (ExecutionException e) {
+      throw e.getCause ();
+    }
+  }
+
+  @Test
+  public void pushStopsOnFailedCreate () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Void> p = c.push (new File ("src/test/resources/data.tsv"));
+    assertThat (c.commands.size (), is (1));
+    c.fail (new IOException ());
+    assertThat (c.commands.size (), is (1));
+    assertTrue (p.isCompletedExceptionally ());
+  }
+
+  @Test
+  public void assignSparseRebuilt () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Void> p = c.assign ("m", SparseMatrix.of (new double[][] { { 0, 1 } }));
+    c.next (null);
+    assertThat (c.commands.size (), is (2));
+    assertThat (c.commands.get (1).toString (), is (new Evaluate (SparseMatrix.rebuild ("m")).toString ()));
+    c.next (null);
+    assertNull (p.get (10, SECONDS));
+  }
+
   @Test
   public void wsAssignFoo () throws Exception {
     assertNull (command (c -> c.assign ("foobar", "foobar"), "/assignStringFoobar.b64", "/emptyPacket.b64"));
@@ -113,4 +222,53 @@ public class ClientTest implements Streams {
     });
     w.push (new File ("src/test/resources/data.tsv")).get (10, TimeUnit.SECONDS);
   }
+
+  @Test
+  public void wsPipelinedPushDataTsv () throws Exception {
+    RecordingRemoteMock r = new RecordingRemoteMock ();
+    Endpoint w =
+        (Endpoint) Client.rserve ().with (newSingleThreadExecutor ()).websocket (new WebSocketContainerMock (r)).pipelined (true).connect ("");
+    w.handshake ("Rsrv0103QAP1  --------------  ");
+    CompletableFuture <Void> p = w.push (new File ("src/test/resources/data.tsv"));
+    for (String e : new String[] { "/createDataTsv.b64", "/writeDataTsv.b64", "/close.b64" })
+      assertArrayEquals (loadb64 (e).array (), r.sent.poll (10, SECONDS));
+    for (int i = 0; i < 3; i++)
+      w.receive (loadb64 ("/emptyPacket.b64"));
+    p.get (10, SECONDS);
+  }
+
+  @Test
+  public void wsFragmentedReadDataTsv () throws Exception {
+    StreamingMatchingRemoteMock y = new StreamingMatchingRemoteMock ();
+    Endpoint w = w (y);
+    y.add (loadb64 ("/read1M.b64").array (), () -> {
+      ByteBuffer r = loadb64 ("/dataTsvStreamPacket.b64");
+      for (int p = 0; p < r.limit (); p += 1000)
+        w.receive (r.duplicate ().position (p).limit (min (p + 1000, r.limit ())).slice (), p + 1000 >= r.limit ());
+      return null;
+    });
+    assertThat (w.execute (new Read (1 << 20)).get (10, SECONDS), is (wrap (readAllBytes (get ("src/test/resources/data.tsv")))));
+  }
+
+  @Test
+  public void wsPipelinedPullDataTsv () throws Exception {
+    RecordingRemoteMock r = new RecordingRemoteMock ();
+    Endpoint w =
+        (Endpoint) Client.rserve ().with (newSingleThreadExecutor ()).websocket (new WebSocketContainerMock (r)).pipelined (true).connect ("");
+    w.handshake ("Rsrv0103QAP1  --------------  ");
+    Path t = createTempFile ("data", ".tsv");
+    CompletableFuture <Void> p = w.pull ("data.tsv", t, 1 << 20);
+    assertArrayEquals (loadb64 ("/openDataTsv.b64").array (), r.sent.poll (10, SECONDS));
+    for (int i = 0; i < Client.FILE_READ_WINDOW; i++)
+      assertArrayEquals (loadb64 ("/read1M.b64").array (), r.sent.poll (10, SECONDS));
+    w.receive (loadb64 ("/emptyPacket.b64"));
+    w.receive (loadb64 ("/dataTsvStreamPacket.b64"));
+    for (int i = 1; i < Client.FILE_READ_WINDOW; i++)
+      w.receive (loadb64 ("/emptyPacket.b64"));
+    assertArrayEquals (loadb64 ("/close.b64").array (), r.sent.poll (10, SECONDS));
+    w.receive (loadb64 ("/emptyPacket.b64"));
+    p.get (10, SECONDS);
+    assertArrayEquals (readAllBytes (get ("src/test/resources/data.tsv")), readAllBytes (t));
+    delete (t);
+  }
 }
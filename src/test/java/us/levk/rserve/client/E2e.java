@@ -38,6 +38,7 @@ import java.util.concurrent.CompletableFuture;
 import org.junit.Test;
 
 import us.levk.jackson.rserve.RserveMapper;
+import us.levk.rserve.client.pool.Pool;
 
 public class E2e {
 
@@ -62,6 +63,21 @@ public class E2e {
     }
   }
 
+  /**
+   * Pooled sessions share no state, pin stateful sequences of commands to a
+   * single session with a lease
+   */
+  @Test
+  public void pooledFactorial () throws Exception {
+    try (Pool p = rserve ().websocket ().pool (2).reset ("rm (list = ls ())").connect (RSERVE);
+         Pool.Lease c = p.lease ().get (10, SECONDS)) {
+      c.assign ("n", 5).get (10, SECONDS);
+      c.evaluate ("f <- function (n) if (n < 1) 1 else n * f (n - 1)").get (10, SECONDS);
+      c.evaluate ("r <- f(n)").get (10, SECONDS);
+      assertThat (c.resolve ("r", Integer.class).get (10, SECONDS), is (120));
+    }
+  }
+
   @Test
   public void push () throws Exception {
     try (Client c = rserve ().websocket ().connect (RSERVE)) {
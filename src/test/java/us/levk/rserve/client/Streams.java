@@ -26,6 +26,7 @@
 package us.levk.rserve.client;
 
 import static java.nio.ByteBuffer.wrap;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.util.Base64.getDecoder;
 import static org.apache.commons.io.IOUtils.copy;
 import static org.junit.Assert.assertArrayEquals;
@@ -36,6 +37,8 @@ import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.stream.Stream;
 
+import us.levk.rserve.client.protocol.Expression;
+
 public interface Streams {
 
   default ByteBuffer loadb64 (String r) throws IOException {
@@ -52,6 +55,16 @@ public interface Streams {
     }
   }
 
+  default ByteBuffer encoded (Expression e) {
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    e.encode ().forEach (b -> {
+      byte[] t = new byte[b.remaining ()];
+      b.get (t);
+      a.write (t, 0, t.length);
+    });
+    return wrap (a.toByteArray ()).order (LITTLE_ENDIAN);
+  }
+
   default void b64 (Stream <ByteBuffer> s) {
     byte[] q = s.reduce (new ByteArrayOutputStream (), (o, b) -> {
       byte[] t = new byte[b.limit () - b.position ()];
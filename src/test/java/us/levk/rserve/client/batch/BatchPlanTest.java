@@ -0,0 +1,211 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.batch;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteBuffer.wrap;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static us.levk.rserve.client.batch.BatchPlan.executor;
+import static us.levk.rserve.client.batch.BatchPlan.plan;
+import static us.levk.rserve.client.protocol.Qap.XT_VECTOR;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import us.levk.jackson.rserve.RserveMapper;
+import us.levk.rserve.client.Assign;
+import us.levk.rserve.client.R;
+import us.levk.rserve.client.Resolve;
+import us.levk.rserve.client.data.Factor;
+import us.levk.rserve.client.mocks.RecordingClientMock;
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Vectors;
+import us.levk.rserve.client.protocol.commands.AssignAll;
+import us.levk.rserve.client.protocol.commands.Evaluate;
+import us.levk.rserve.client.protocol.commands.ResolveAll;
+
+public class BatchPlanTest {
+
+  @R ("y <- x")
+  static class Echo {
+    @Assign String x = "foo";
+    @Resolve String y;
+  }
+
+  static class Broken {
+    @Assign
+    String x () {
+      throw new IllegalStateException ();
+    }
+  }
+
+  @R ("z <- x + y")
+  static class Sum {
+    @Assign int x = 1;
+    @Assign int y = 2;
+  }
+
+  static class Pair {
+    @Resolve int x;
+    int y;
+
+    @Resolve ("y")
+    void y (int v) {
+      y = v;
+    }
+  }
+
+  static class Procedure {
+    @Assign
+    void x () {}
+  }
+
+  static class Columns {
+    @Resolve Factor f;
+    @Resolve ByteBuffer b;
+  }
+
+  static class Hidden {
+    @Assign private String x = "foo";
+  }
+
+  @Test
+  public void generated () {
+    assertThat (executor (Echo.class), not (instanceOf (BatchPlan.class)));
+    assertThat (executor (Echo.class), sameInstance (executor (Echo.class)));
+    assertThat (executor (Hidden.class), sameInstance (plan (Hidden.class)));
+    assertThat (executor (Procedure.class), sameInstance (plan (Procedure.class)));
+  }
+
+  @Test
+  public void cached () {
+    assertThat (plan (Echo.class), sameInstance (plan (Echo.class)));
+  }
+
+  @Test
+  public void echo () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    c.pipelined = true;
+    CompletableFuture <Echo> e = c.batch (new Echo ());
+    assertThat (c.commands.size (), is (3));
+    assertThat (c.commands.get (0), instanceOf (us.levk.rserve.client.protocol.commands.Assign.class));
+    assertThat (c.commands.get (1), instanceOf (Evaluate.class));
+    assertThat (c.commands.get (2), instanceOf (us.levk.rserve.client.protocol.commands.Resolve.class));
+    c.next (null);
+    c.next (null);
+    c.next ("bar");
+    assertThat (e.get (10, SECONDS).y, is ("bar"));
+  }
+
+  @Test
+  public void echoSequential () throws Exception {
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Echo> e = c.batch (new Echo ());
+    assertThat (c.commands.size (), is (1));
+    c.next (null);
+    assertThat (c.commands.size (), is (2));
+    c.next (null);
+    assertThat (c.commands.size (), is (3));
+    c.next ("bar");
+    assertThat (e.get (10, SECONDS).y, is ("bar"));
+  }
+
+  @Test
+  public void failedAssignStopsSequential () {
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Echo> e = c.batch (new Echo ());
+    c.fail (new IllegalStateException ());
+    assertThat (c.commands.size (), is (1));
+    assertTrue (e.isCompletedExceptionally ());
+  }
+
+  @Test
+  public void assignAll () {
+    RecordingClientMock c = new RecordingClientMock ();
+    c.pipelined = true;
+    c.batch (new Sum ());
+    plan (Sum.class).execute (c, new Sum ());
+    assertThat (c.commands.size (), is (4));
+    for (int i = 0; i < 4; i += 2) {
+      assertThat (c.commands.get (i), instanceOf (AssignAll.class));
+      assertThat (c.commands.get (i + 1), instanceOf (Evaluate.class));
+    }
+  }
+
+  @Test
+  public void resolveAll () throws Exception {
+    Map <String, Object> v = new HashMap <> ();
+    v.put ("x", 1);
+    v.put ("y", 2);
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Pair> g = c.batch (new Pair ());
+    CompletableFuture <Object> r = plan (Pair.class).execute (c, new Pair ());
+    assertThat (c.commands.size (), is (2));
+    assertThat (c.commands.get (0), instanceOf (ResolveAll.class));
+    c.next (v);
+    c.next (v);
+    assertThat (g.get (10, SECONDS).y, is (2));
+    assertThat (((Pair) r.get (10, SECONDS)).x, is (1));
+  }
+
+  @Test
+  public void failedGetter () {
+    assertTrue (new RecordingClientMock ().batch (new Broken ()).isCompletedExceptionally ());
+  }
+
+  @Test
+  public void resolveAllDirect () throws Exception {
+    Map <String, List <ByteBuffer>> n = new LinkedHashMap <> ();
+    n.put ("names", asList (Vectors.strings (new String[] { "f", "b" })));
+    List <ByteBuffer> e = Factor.of (new String[] { "u", "v", "u" }).encode ().collect (toList ());
+    Vectors.raw (wrap ("xyz".getBytes ())).forEach (e::add);
+    ByteBuffer l = allocate (1 << 10);
+    Expressions.expression (XT_VECTOR, n, e).forEach (l::put);
+
+    RecordingClientMock c = new RecordingClientMock ();
+    CompletableFuture <Columns> g = c.batch (new Columns ());
+    assertThat (c.commands.size (), is (1));
+    c.next (((ResolveAll) c.commands.get (0)).decode (l.flip (), new RserveMapper ()));
+    Columns r = g.get (10, SECONDS);
+    assertThat (r.f.get (2), is ("u"));
+    assertThat (r.b.get (1), is ((byte) 'y'));
+    assertTrue (c.commands.get (0).retains ());
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.content;
+import static us.levk.rserve.client.protocol.Expressions.next;
+import static us.levk.rserve.client.protocol.Expressions.type;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Streams;
+import us.levk.rserve.client.protocol.Vectors;
+
+public class DataFrameTest implements Streams {
+
+  public static record Sample (String id, double value, Integer count, boolean flag) {}
+
+  public static class Bean {
+    int a = 1;
+    transient int b = 2;
+    Long c = null;
+  }
+
+  private final DataFrame f = DataFrame.of (asList (new Sample ("x", 1.5, 3, true), new Sample (null, 2.5, null, false)),
+                                            Sample.class);
+
+  @Test
+  public void columns () {
+    assertThat (f.rows (), is (2));
+    assertThat (f.names (), is (asList ("id", "value", "count", "flag")));
+    assertArrayEquals (new String[] { "x", null }, (String[]) f.column ("id"));
+    assertArrayEquals (new int[] { 3, Integer.MIN_VALUE }, (int[]) f.column ("count"));
+    assertThat (f.column ("none"), is (nullValue ()));
+  }
+
+  @Test
+  public void fields () {
+    DataFrame b = DataFrame.of (asList (new Bean ()), Bean.class);
+    assertThat (b.names (), is (asList ("a", "c")));
+    assertThat (((long[]) b.column ("c"))[0], is (Vectors.NA_INTEGER64));
+  }
+
+  @Test
+  public void encode () throws Exception {
+    ByteBuffer e = encoded (f);
+    assertThat (type (e), is (16));
+    ByteBuffer r = content (attribute (e, "row.names"));
+    assertThat (r.getInt (0), is (Integer.MIN_VALUE));
+    assertThat (r.getInt (4), is (-2));
+    assertThat (type (attribute (e, "class")), is (34));
+    ByteBuffer c = content (e);
+    next (c);
+    assertThat (type (c), is (33));
+    assertThat (content (c).getDouble (8), is (2.5));
+    next (c);
+    next (c);
+    assertThat (type (c), is (36));
+  }
+
+  @Test
+  public void decode () throws Exception {
+    DataFrame d = DataFrame.decode (encoded (f));
+    assertThat (d.rows (), is (2));
+    assertThat (d.names (), is (f.names ()));
+    assertArrayEquals (new String[] { "x", null }, d.strings ("id"));
+    assertThat (d.doubles ("value")[1], is (2.5));
+    assertArrayEquals (new int[] { 3, Integer.MIN_VALUE }, d.integers ("count"));
+    assertArrayEquals (new Boolean[] { true, false }, d.logicals ("flag"));
+  }
+
+  @Test
+  public void longsExact () throws Exception {
+    long x = (1L << 53) + 1;
+    assertThat ((long) (double) x == x, is (false));
+    record Wide (long a, Long b) {}
+    DataFrame w = DataFrame.of (asList (new Wide (x, null), new Wide (-x, x)), Wide.class);
+    ByteBuffer e = encoded (w);
+    ByteBuffer c = content (e);
+    assertThat (asList (Vectors.strings (content (attribute (next (c), "class")))), is (asList ("integer64")));
+    DataFrame d = DataFrame.decode (encoded (w));
+    assertArrayEquals (new long[] { x, -x }, d.longs ("a"));
+    assertArrayEquals (new long[] { Vectors.NA_INTEGER64, x }, d.longs ("b"));
+  }
+
+  @Test
+  public void decodeFactor () throws Exception {
+    Map <String, Object> c = new LinkedHashMap <> ();
+    c.put ("g", Factor.of (new String[] { "a", "b", "a" }));
+    c.put ("v", new int[] { 1, 2, 3 });
+    DataFrame d = (DataFrame) Vectors.decode (encoded (new DataFrame (c)), DataFrame.class);
+    assertArrayEquals (new String[] { "a", "b" }, d.factor ("g").levels ());
+    assertArrayEquals (new int[] { 1, 2, 1 }, d.factor ("g").codes ());
+  }
+
+  @Test (expected = IOException.class)
+  public void decodeMatrix () throws Exception {
+    DataFrame.decode (encoded (RMatrix.of (new double[][] { { 1 } })));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void mistyped () {
+    f.doubles ("id");
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void ragged () {
+    new DataFrame (Map.of ("a", new int[1], "b", new double[2]));
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Streams;
+
+public class LazySexpTest implements Streams {
+
+  private final LazySexp l;
+
+  public LazySexpTest () throws Exception {
+    Map <String, Object> c = new LinkedHashMap <> ();
+    c.put ("id", new String[] { "a", null, "ccc" });
+    c.put ("coefficients", new double[] { 1.5, 2.5, 3.5 });
+    c.put ("n", new int[] { 7, 8, 9 });
+    l = LazySexp.decode (encoded (new DataFrame (c)));
+  }
+
+  @Test
+  public void elements () {
+    assertThat (l.size (), is (3));
+    assertArrayEquals (new String[] { "id", "coefficients", "n" }, l.names ());
+    assertThat (l.get ("coefficients").getDouble (2), is (3.5));
+    assertThat (l.get (2).getInt (1), is (8));
+    assertThat (l.get ("missing"), is (nullValue ()));
+  }
+
+  @Test
+  public void strings () {
+    LazySexp s = l.get ("id");
+    assertThat (s.size (), is (3));
+    assertThat (s.getString (1), is (nullValue ()));
+    assertThat (s.getString (2), is ("ccc"));
+  }
+
+  @Test
+  public void as () throws Exception {
+    assertArrayEquals (new int[] { 7, 8, 9 }, (int[]) l.get ("n").as (int[].class));
+  }
+
+  @Test (expected = IllegalStateException.class)
+  public void mistyped () {
+    l.get ("n").getDouble (0);
+  }
+
+  @Test (expected = IndexOutOfBoundsException.class)
+  public void bounds () {
+    l.get ("coefficients").getDouble (3);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Streams;
+
+public class RMatrixTest implements Streams {
+
+  private final RMatrix m = RMatrix.of (new double[][] { { 1, 2, 3 }, { 4, 5, 6 } });
+
+  @Test
+  public void columnMajor () {
+    assertThat (m.rows (), is (2));
+    assertThat (m.columns (), is (3));
+    assertThat (m.get (1, 0), is (4.0));
+    assertThat (m.column (2).get (1), is (6.0));
+    assertThat (m.values ().get (1), is (4.0));
+  }
+
+  @Test
+  public void encode () {
+    ByteBuffer e = allocate (76).order (LITTLE_ENDIAN).putInt (33 | 128 | 72 << 8).putInt (21 | 20 << 8).putInt (32 | 8 << 8)
+                                .putInt (2).putInt (3).putInt (19 | 4 << 8).put ("dim\0".getBytes (US_ASCII));
+    for (double v : new double[] { 1, 4, 2, 5, 3, 6 })
+      e.putDouble (v);
+    assertArrayEquals (e.array (), encoded (m).array ());
+  }
+
+  @Test
+  public void decode () throws Exception {
+    RMatrix d = RMatrix.decode (encoded (m));
+    assertThat (d.rows (), is (2));
+    assertThat (d.columns (), is (3));
+    assertThat (d.get (0, 2), is (3.0));
+  }
+
+  @Test (expected = IOException.class)
+  public void decodeVector () throws Exception {
+    RMatrix.decode (allocate (12).order (LITTLE_ENDIAN).putInt (33 | 8 << 8).putDouble (1).flip ());
+  }
+
+  @Test
+  public void segmented () {
+    RMatrix s = new RMatrix (2, 3, 32);
+    for (int i = 0; i < 2; i++)
+      for (int j = 0; j < 3; j++)
+        s.set (i, j, m.get (i, j));
+    assertThat (s.segments (), is (2));
+    assertThat (s.column (2).get (1), is (6.0));
+    assertArrayEquals (encoded (m).array (), encoded (s).array ());
+  }
+
+  @Test (expected = IndexOutOfBoundsException.class)
+  public void bounds () {
+    m.get (2, 0);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.data;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static us.levk.rserve.client.protocol.Expressions.attribute;
+import static us.levk.rserve.client.protocol.Expressions.type;
+import static us.levk.rserve.client.protocol.Qap.XT_S4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Streams;
+import us.levk.rserve.client.protocol.Expressions;
+import us.levk.rserve.client.protocol.Vectors;
+
+public class SparseMatrixTest implements Streams {
+
+  private final SparseMatrix m = SparseMatrix.of (new double[][] { { 0, 2, 0 }, { 1, 0, 0 }, { 0, 3, 4 } });
+
+  @Test
+  public void compressed () {
+    assertArrayEquals (new int[] { 0, 1, 3, 4 }, m.pointers ());
+    assertArrayEquals (new int[] { 1, 0, 2, 2 }, m.indices ());
+    assertArrayEquals (new double[] { 1, 2, 3, 4 }, m.values (), 0);
+    assertThat (m.get (2, 1), is (3.0));
+    assertThat (m.get (1, 1), is (0.0));
+  }
+
+  @Test
+  public void encode () throws Exception {
+    ByteBuffer e = encoded (m);
+    assertThat (type (e), is (16));
+    assertThat (type (attribute (e, "names")), is (34));
+  }
+
+  @Test
+  public void decodeS4 () throws Exception {
+    Map <String, List <ByteBuffer>> a = new LinkedHashMap <> ();
+    a.put ("i", asList (Vectors.integers (m.indices ())));
+    a.put ("p", asList (Vectors.integers (m.pointers ())));
+    a.put ("Dim", asList (Vectors.integers (new int[] { 3, 3 })));
+    a.put ("x", asList (Vectors.doubles (m.values ())));
+    ByteBuffer e = allocate (1 << 10).order (LITTLE_ENDIAN);
+    Expressions.expression (XT_S4, a, emptyList ()).forEach (e::put);
+    assertThat (SparseMatrix.decode (e.flip ()).get (0, 1), is (2.0));
+  }
+
+  @Test
+  public void rebuild () {
+    assertThat (SparseMatrix.rebuild ("m"),
+                is ("`m` <- Matrix::sparseMatrix (i = `m`$i, p = `m`$p, x = `m`$x, dims = `m`$Dim, index1 = FALSE)"));
+  }
+
+  @Test
+  public void decode () throws Exception {
+    SparseMatrix d = SparseMatrix.decode (encoded (m));
+    assertThat (d.rows (), is (3));
+    assertThat (d.columns (), is (3));
+    assertThat (d.size (), is (4));
+    assertThat (d.get (2, 2), is (4.0));
+  }
+
+  @Test (expected = IOException.class)
+  public void decodeDense () throws Exception {
+    SparseMatrix.decode (encoded (RMatrix.of (new double[][] { { 1 } })));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void unordered () {
+    new SparseMatrix (2, 1, new int[] { 0, 2 }, new int[] { 1, 0 }, new double[] { 1, 2 });
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.flow;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.mocks.RecordingClientMock;
+import us.levk.rserve.client.protocol.commands.Close;
+
+public class ReadPublisherTest {
+
+  @Test
+  public void cancelClosesAfterReadsInFlight () {
+    RecordingClientMock c = new RecordingClientMock ();
+    List <Client> r = new ArrayList <> ();
+    List <Subscription> s = new ArrayList <> ();
+    new ReadPublisher ( () -> completedFuture (c), r::add, "f", 4, 2).subscribe (new Subscriber <ByteBuffer> () {
+      public void onSubscribe (Subscription x) {
+        s.add (x);
+      }
+
+      public void onNext (ByteBuffer b) {}
+
+      public void onError (Throwable e) {}
+
+      public void onComplete () {}
+    });
+    s.get (0).request (4);
+    assertThat (c.commands.size (), is (3));
+    s.get (0).cancel ();
+    c.next (null);
+    c.next (allocate (4));
+    assertThat (c.commands.size (), is (3));
+    c.next (allocate (4));
+    assertThat (c.commands.size (), is (4));
+    assertThat (c.commands.get (3), instanceOf (Close.class));
+    assertThat (r.isEmpty (), is (true));
+    c.next (null);
+    assertThat (r.size (), is (1));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.mocks;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+public class QapServerMock implements Closeable {
+
+  public static final String ID = "Rsrv0103QAP1\r\n\r\n--------------\r\n";
+
+  final ServerSocketChannel s;
+  final String id;
+  final LinkedHashMap <byte[], byte[]> h = new LinkedHashMap <> ();
+
+  public QapServerMock (ServerSocketChannel c, String i) {
+    s = c;
+    id = i;
+  }
+
+  public QapServerMock add (byte[] q, byte[] r) {
+    h.put (q, r);
+    return this;
+  }
+
+  public QapServerMock start () {
+    new Thread ( () -> {
+      try (SocketChannel c = s.accept ()) {
+        c.write (wrap (id.getBytes (US_ASCII)));
+        for (Entry <byte[], byte[]> e : h.entrySet ()) {
+          ByteBuffer b = allocate (e.getKey ().length);
+          while (b.hasRemaining ())
+            if (c.read (b) < 0) return;
+          if (!Arrays.equals (e.getKey (), b.array ())) return;
+          c.write (wrap (e.getValue ()));
+        }
+        c.read (allocate (1));
+      } catch (IOException e) {}
+    }).start ();
+    return this;
+  }
+
+  public SocketAddress address () throws IOException {
+    return s.getLocalAddress ();
+  }
+
+  @Override
+  public void close () throws IOException {
+    s.close ();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.mocks;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.protocol.commands.Command;
+
+public class RecordingClientMock implements Client {
+
+  public final List <Command <?>> commands = new CopyOnWriteArrayList <> ();
+  final List <CompletableFuture <?>> pending = new CopyOnWriteArrayList <> ();
+  public boolean closed;
+  public boolean pipelined;
+
+  @Override
+  public <T> CompletableFuture <T> execute (Command <T> c) {
+    CompletableFuture <T> r = new CompletableFuture <> ();
+    commands.add (c);
+    pending.add (r);
+    return r;
+  }
+
+  public void complete () {
+    pending.forEach (p -> p.complete (null));
+    pending.clear ();
+  }
+
+  @SuppressWarnings ("unchecked")
+  public void next (Object v) {
+    ((CompletableFuture <Object>) pending.remove (0)).complete (v);
+  }
+
+  public void fail (Throwable e) {
+    pending.remove (0).completeExceptionally (e);
+  }
+
+  @Override
+  public boolean pipelined () {
+    return pipelined;
+  }
+
+  @Override
+  public void close () {
+    closed = true;
+  }
+}
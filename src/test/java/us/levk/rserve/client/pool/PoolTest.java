@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.pool;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.mocks.RecordingClientMock;
+import us.levk.rserve.client.protocol.commands.Command;
+import us.levk.rserve.client.protocol.commands.Close;
+import us.levk.rserve.client.protocol.commands.Create;
+import us.levk.rserve.client.protocol.commands.Evaluate;
+import us.levk.rserve.client.protocol.commands.Write;
+
+public class PoolTest {
+
+  @Test
+  public void leastOutstanding () throws Exception {
+    RecordingClientMock a = new RecordingClientMock (), b = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a, b))) {
+      for (int i = 0; i < 4; i++)
+        p.evaluate ("x");
+      assertThat (a.commands.size (), is (2));
+      assertThat (b.commands.size (), is (2));
+      a.complete ();
+      p.evaluate ("y");
+      p.resolve ("z", Integer.class);
+      assertThat (a.commands.size (), is (4));
+      assertThat (b.commands.size (), is (2));
+    }
+    assertTrue (a.closed);
+    assertTrue (b.closed);
+  }
+
+  @Test
+  public void pushPinned () throws Exception {
+    RecordingClientMock a = new RecordingClientMock (), b = new RecordingClientMock ();
+    a.pipelined = b.pipelined = true;
+    try (Pool p = new Pool (asList (a, b))) {
+      p.evaluate ("x");
+      p.push (new File ("src/test/resources/data.tsv"));
+      assertThat (a.commands.size (), is (1));
+      assertThat (b.commands.size (), is (3));
+      assertThat (b.commands.get (0), instanceOf (Create.class));
+      assertThat (b.commands.get (1), instanceOf (Write.class));
+      assertThat (b.commands.get (2), instanceOf (Close.class));
+    }
+  }
+
+  @Test
+  public void assignChunkedPinned () throws Exception {
+    RecordingClientMock a = new RecordingClientMock (), b = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a, b))) {
+      p.evaluate ("x");
+      CompletableFuture <Void> f = p.assignChunked ("y", new int[] { 1, 2, 3 }, 2);
+      while (!f.isDone ())
+        b.next (null);
+      assertNull (f.get ());
+      assertThat (a.commands.size (), is (1));
+      assertThat (b.commands.size (), is (6));
+    }
+  }
+
+  @Test
+  public void leaseExclusive () throws Exception {
+    RecordingClientMock a = new RecordingClientMock (), b = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a, b), "rm (list = ls ())")) {
+      Pool.Lease x = p.lease ().get (), y = p.lease ().get ();
+      CompletableFuture <Pool.Lease> z = p.lease ();
+      assertFalse (z.isDone ());
+      x.evaluate ("n <- 5");
+      y.evaluate ("n <- 6");
+      y.evaluate ("n <- 7");
+      assertThat (a.commands.size (), is (1));
+      assertThat (b.commands.size (), is (2));
+      x.close ();
+      assertThat (a.commands.get (1).toString (), is (new Evaluate ("rm (list = ls ())").toString ()));
+      assertFalse (z.isDone ());
+      a.complete ();
+      z.get ().evaluate ("n <- 8");
+      assertThat (a.commands.size (), is (3));
+    }
+  }
+
+  @Test
+  public void executeAvoidsLeased () throws Exception {
+    RecordingClientMock a = new RecordingClientMock (), b = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a, b))) {
+      p.lease ().get ();
+      for (int i = 0; i < 3; i++)
+        p.evaluate ("x");
+      assertThat (a.commands.size () + b.commands.size (), is (3));
+      assertTrue (a.commands.isEmpty () || b.commands.isEmpty ());
+    }
+  }
+
+  @Test
+  public void executeQueuedPastWaitingLease () throws Exception {
+    RecordingClientMock a = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a))) {
+      Pool.Lease l = p.lease ().get ();
+      CompletableFuture <Void> e = p.evaluate ("x");
+      CompletableFuture <Pool.Lease> w = p.lease ();
+      l.close ();
+      assertTrue (w.isDone ());
+      assertThat (a.commands.size (), is (0));
+      w.get ().close ();
+      assertThat (a.commands.toString (), is ("[Evaluate{x}]"));
+      a.next (null);
+      assertNull (e.get ());
+    }
+  }
+
+  @Test
+  public void executeAvoidsLeasedConcurrently () throws Exception {
+    class Tracking implements Client {
+      boolean leased;
+      int violations;
+
+      @Override
+      public synchronized <T> CompletableFuture <T> execute (Command <T> c) {
+        String e = c.toString ();
+        if (e.equals ("Evaluate{lease}")) leased = true;
+        else if (e.equals ("Evaluate{reset}")) leased = false;
+        else if (leased && e.equals ("Evaluate{shared}")) violations++;
+        return completedFuture (null);
+      }
+
+      @Override
+      public void close () {}
+    }
+    Tracking a = new Tracking (), b = new Tracking ();
+    ExecutorService x = newFixedThreadPool (4);
+    try (Pool p = new Pool (asList (a, b), "reset")) {
+      List <Future <?>> f = new ArrayList <> ();
+      for (int t = 0; t < 2; t++) {
+        f.add (x.submit ( () -> {
+          for (int i = 0; i < 5000; i++)
+            p.evaluate ("shared").join ();
+        }));
+        f.add (x.submit ( () -> {
+          for (int i = 0; i < 5000; i++)
+            try (Pool.Lease l = p.lease ().join ()) {
+              l.evaluate ("lease").join ();
+              l.evaluate ("work").join ();
+            }
+          return null;
+        }));
+      }
+      for (Future <?> g : f)
+        g.get (30, SECONDS);
+    } finally {
+      x.shutdownNow ();
+    }
+    assertThat (a.violations + b.violations, is (0));
+  }
+
+  @Test
+  public void executeQueuedWhileAllLeased () throws Exception {
+    RecordingClientMock a = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a))) {
+      Pool.Lease l = p.lease ().get ();
+      CompletableFuture <Void> e = p.evaluate ("x");
+      assertThat (a.commands.size (), is (0));
+      l.close ();
+      assertThat (a.commands.size (), is (1));
+      a.next (null);
+      assertTrue (e.isDone ());
+    }
+  }
+
+  @Test
+  public void failedResetEvicts () throws Exception {
+    RecordingClientMock a = new RecordingClientMock (), b = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a), "rm (list = ls ())", c -> completedFuture (b))) {
+      p.lease ().get ().close ();
+      CompletableFuture <Void> e = p.evaluate ("x");
+      a.fail (new IOException ());
+      assertTrue (a.closed);
+      assertThat (a.commands.size (), is (1));
+      assertThat (b.commands.size (), is (1));
+      b.next (null);
+      assertTrue (e.isDone ());
+    }
+  }
+
+  @Test
+  public void failedResetShrinks () throws Exception {
+    RecordingClientMock a = new RecordingClientMock ();
+    try (Pool p = new Pool (asList (a), "rm (list = ls ())")) {
+      p.lease ().get ().close ();
+      CompletableFuture <Pool.Lease> l = p.lease ();
+      a.fail (new IOException ());
+      assertTrue (a.closed);
+      assertTrue (l.isCompletedExceptionally ());
+      assertTrue (p.evaluate ("x").isCompletedExceptionally ());
+    }
+  }
+}
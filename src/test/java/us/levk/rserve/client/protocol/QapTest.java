@@ -31,15 +31,18 @@ import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThat;
+import static us.levk.rserve.client.protocol.Qap.CMD_eval;
 import static us.levk.rserve.client.protocol.Qap.DT_SEXP;
 import static us.levk.rserve.client.protocol.Qap.DT_STRING;
 import static us.levk.rserve.client.protocol.Qap.header;
+import static us.levk.rserve.client.protocol.Qap.message;
 import static us.levk.rserve.client.protocol.Qap.packet;
 import static us.levk.rserve.client.protocol.Qap.sexp;
 import static us.levk.rserve.client.protocol.Qap.string;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 
@@ -58,6 +61,28 @@ public class QapTest implements Streams {
     assertThat (header (DT_SEXP, 0xfffff1), is (loadb64 ("/largeHeader.b64")));
   }
 
+  @Test
+  public void wideHeader () throws Exception {
+    assertArrayEquals (new byte[] { (byte) (DT_SEXP | 64), 1, 0, 0, 0, 3, 0, 0 }, header (DT_SEXP, 3L << 32 | 1).array ());
+  }
+
+  @Test
+  public void lengthBelowLimit () throws Exception {
+    assertThat (Qap.length (message (CMD_eval, Integer.MAX_VALUE - 16)), is (Integer.MAX_VALUE - 16));
+  }
+
+  @Test (expected = IOException.class)
+  public void lengthPastLimit () throws Exception {
+    Qap.length (message (CMD_eval, 1L << 31));
+  }
+
+  @Test
+  public void wideMessage () throws Exception {
+    ByteBuffer m = message (CMD_eval, 5L << 32 | 7);
+    assertThat (m.getInt (4), is (7));
+    assertThat (m.getInt (12), is (5));
+  }
+
   @Test
   public void stringFoobar () throws Exception {
     try (ByteArrayOutputStream o = new ByteArrayOutputStream ()) {
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class StringDictionaryTest {
+
+  private final ByteBuffer b = ByteBuffer.wrap ("abababcd".getBytes (UTF_8));
+
+  @Test
+  public void shared () {
+    StringDictionary d = new StringDictionary (4);
+    String a = d.get (b, 0, 2);
+    assertThat (a, is ("ab"));
+    assertThat (d.get (b, 4, 2), is (sameInstance (a)));
+    assertThat (d.get (b, 6, 2), is ("cd"));
+    assertThat (d.size (), is (2));
+  }
+
+  @Test
+  public void bounded () {
+    StringDictionary d = new StringDictionary (1);
+    d.get (b, 6, 2);
+    String a = d.get (b, 0, 2);
+    assertThat (d.get (b, 2, 2), is (not (sameInstance (a))));
+    assertThat (d.size (), is (1));
+  }
+
+  @Test
+  public void grows () {
+    StringDictionary d = new StringDictionary (1 << 20);
+    String[] v = new String[100];
+    for (int i = 0; i < v.length; i++) {
+      byte[] k = ("v" + i).getBytes (UTF_8);
+      v[i] = d.get (ByteBuffer.wrap (k), 0, k.length);
+    }
+    for (int i = 0; i < v.length; i++) {
+      byte[] k = ("v" + i).getBytes (UTF_8);
+      assertThat (d.get (ByteBuffer.wrap (k), 0, k.length), is (sameInstance (v[i])));
+    }
+    assertThat (d.size (), is (100));
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static us.levk.rserve.client.protocol.Vectors.decode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.data.Factor;
+
+public class VectorsTest {
+
+  private ByteBuffer encode (Object v) throws IOException {
+    return joined (Vectors.encode (v));
+  }
+
+  private ByteBuffer joined (List <ByteBuffer> l) {
+    ByteBuffer b = allocate (l.stream ().mapToInt (ByteBuffer::remaining).sum ()).order (LITTLE_ENDIAN);
+    l.forEach (x -> b.put (x.duplicate ()));
+    return b.flip ();
+  }
+
+  private byte[] bytes (ByteBuffer b) {
+    byte[] r = new byte[b.remaining ()];
+    b.get (r);
+    return r;
+  }
+
+  @Test
+  public void doubles () throws Exception {
+    ByteBuffer e = allocate (20).order (LITTLE_ENDIAN).putInt (33 | 16 << 8).putDouble (1.5).putDouble (-2);
+    assertArrayEquals (e.array (), bytes (encode (new double[] { 1.5, -2 })));
+  }
+
+  @Test
+  public void integers () throws Exception {
+    ByteBuffer e = allocate (16).order (LITTLE_ENDIAN).putInt (32 | 12 << 8).putInt (1).putInt (2).putInt (0x80000000);
+    assertArrayEquals (e.array (), bytes (encode (new int[] { 1, 2, 0x80000000 })));
+  }
+
+  @Test
+  public void logicals () throws Exception {
+    assertArrayEquals (new byte[] { 36, 12, 0, 0, 5, 0, 0, 0, 1, 0, 0, 1, 1, -1, -1, -1 },
+                       bytes (encode (new boolean[] { true, false, false, true, true })));
+  }
+
+  @Test
+  public void strings () throws Exception {
+    assertArrayEquals (new byte[] { 34, 8, 0, 0, 'a', 'b', 0, -1, 0, 0, 1, 1 },
+                       bytes (encode (new String[] { "ab", null, "" })));
+  }
+
+  @Test
+  public void large () throws Exception {
+    ByteBuffer b = encode (new double[1 << 21]);
+    assertThat (b.remaining (), is (8 + (1 << 24)));
+    assertThat (b.get (0), is ((byte) (33 | 64)));
+  }
+
+  @Test
+  public void segmented () throws Exception {
+    double[] d = { 1, 2, 3, 4, 5 };
+    List <ByteBuffer> b = Vectors.doubles (d, 16);
+    assertThat (b.size (), is (4));
+    assertThat (b.get (3).remaining (), is (8));
+    assertArrayEquals (bytes (Vectors.doubles (d)), bytes (joined (b)));
+    int[] i = { 1, 2, 3 };
+    assertArrayEquals (bytes (Vectors.integers (i)), bytes (joined (Vectors.integers (i, 8))));
+  }
+
+  @Test
+  public void segmentedStringsAndLogicals () throws Exception {
+    String[] s = { "abcdef", null, "", "ghi" };
+    List <ByteBuffer> e = Vectors.strings (s, 3);
+    assertThat (e.get (1).remaining (), is (3));
+    assertArrayEquals (bytes (Vectors.strings (s)), bytes (joined (e)));
+    boolean[] l = { true, false, true, true, false };
+    assertArrayEquals (bytes (Vectors.logicals (l)), bytes (joined (Vectors.logicals (l, 4))));
+    Boolean[] n = { true, null, false };
+    assertArrayEquals (bytes (Vectors.logicals (n)), bytes (joined (Vectors.logicals (n, 2))));
+  }
+
+  @Test
+  public void decodeFactorLabels () throws Exception {
+    ByteBuffer e = joined (Factor.of (new String[] { "a", "b", "a", null }).encode ().collect (toList ()));
+    String[] l = (String[]) decode (e, String[].class, new StringDictionary (4));
+    assertArrayEquals (new String[] { "a", "b", "a", null }, l);
+    assertThat (l[0] == l[2], is (true));
+  }
+
+  @Test
+  public void decodeDoubles () throws Exception {
+    assertArrayEquals (new double[] { 1.5, -2 }, (double[]) decode (encode (new double[] { 1.5, -2 }), double[].class), 0);
+  }
+
+  @Test
+  public void decodeIntegers () throws Exception {
+    assertArrayEquals (new int[] { 7, 0x80000000 }, (int[]) decode (encode (new int[] { 7, 0x80000000 }), int[].class));
+  }
+
+  @Test
+  public void decodeLarge () throws Exception {
+    double[] d = new double[1 << 21];
+    d[d.length - 1] = 89;
+    assertThat (((double[]) decode (encode (d), double[].class))[d.length - 1], is (89.0));
+  }
+
+  @Test
+  public void view () throws Exception {
+    ByteBuffer b = allocateDirect (20).order (LITTLE_ENDIAN).putInt (33 | 16 << 8).putDouble (1).putDouble (2).flip ();
+    DoubleBuffer v = (DoubleBuffer) decode (b, DoubleBuffer.class);
+    assertThat (v.isReadOnly (), is (true));
+    assertThat (v.remaining (), is (2));
+    b.putDouble (12, 3);
+    assertThat (v.get (1), is (3.0));
+  }
+
+  @Test
+  public void mismatched () throws Exception {
+    assertThat (decode (encode (new int[] { 1 }), double[].class), is (nullValue ()));
+    assertThat (decode (encode (new int[] { 1 }), Integer.class), is (nullValue ()));
+    ByteBuffer b = encode (new double[] { 1 });
+    b.put (0, (byte) (33 | 128));
+    assertThat (decode (b, double[].class), is (nullValue ()));
+  }
+
+  @Test
+  public void unsupported () throws Exception {
+    assertThat (Vectors.encode (new long[0]), is (nullValue ()));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SuppressWarnings ("serial")
+public class AssignAllTest {
+
+  @Test
+  public void list2env () throws Exception {
+    Map <String, Object> v = new LinkedHashMap <> ();
+    v.put ("x", 1);
+    v.put ("y", "z");
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    new AssignAll (v).encode (new ObjectMapper () {
+      public void writeValue (OutputStream o, Object w) throws IOException {
+        assertThat (v.containsValue (w), is (true));
+        o.write (new byte[] { 16, 0, 0, 0 });
+      }
+    }).forEach (b -> a.write (b.array (), b.position (), b.remaining ()));
+
+    ByteBuffer e = allocate (92).order (LITTLE_ENDIAN);
+    e.putInt (3).putInt (76).putInt (0).putInt (0);
+    e.putInt (10 | 72 << 8).putInt (22 | 68 << 8);
+    e.putInt (19 | 12 << 8).put ("list2env".getBytes (US_ASCII)).putInt (0);
+    e.putInt (16 | 128 | 32 << 8).putInt (21 | 20 << 8);
+    e.putInt (34 | 4 << 8).put ("x\0y\0".getBytes (US_ASCII));
+    e.putInt (19 | 8 << 8).put ("names\0\0\0".getBytes (US_ASCII));
+    e.putInt (16).putInt (16);
+    e.putInt (19 | 12 << 8).put (".GlobalEnv".getBytes (US_ASCII)).putShort ((short) 0);
+    assertArrayEquals (e.array (), a.toByteArray ());
+  }
+
+  @Test
+  public void streamedLikeEncoded () throws Exception {
+    Map <String, Object> v = new LinkedHashMap <> ();
+    v.put ("x", new int[] { 1, 2 });
+    v.put ("y", range (0, 100000).boxed ().collect (toList ()));
+    ByteArrayOutputStream e = new ByteArrayOutputStream ();
+    new AssignAll (v).encode (new ObjectMapper ()).forEach (b -> e.write (b.array (), b.position (), b.remaining ()));
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    List <Boolean> l = new ArrayList <> ();
+    new AssignAll (v).encode (new ObjectMapper (), (b, z) -> {
+      l.add (z);
+      while (b.hasRemaining ())
+        a.write (b.get ());
+    });
+    assertArrayEquals (e.toByteArray (), a.toByteArray ());
+    assertThat (l.indexOf (true), is (l.size () - 1));
+  }
+}
@@ -25,17 +25,29 @@
  */
 package us.levk.rserve.client.protocol.commands;
 
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThat;
+import static us.levk.rserve.client.protocol.Qap.CMD_assignSEXP;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import us.levk.jackson.rserve.RserveMapper;
 import us.levk.rserve.client.Streams;
@@ -60,4 +72,90 @@ public class AssignTest implements Streams {
       }
     }), "/assignStringFoobar.b64");
   }
+
+  @Test
+  public void doublesBypassMapper () throws Exception {
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    new Assign ("x", new double[] { 89 }).encode (null).forEach (b -> a.write (b.array (), b.position (), b.remaining ()));
+    ByteBuffer e = allocate (40).order (LITTLE_ENDIAN);
+    e.putInt (CMD_assignSEXP).putInt (24).putInt (0).putInt (0);
+    e.putInt (4 | 4 << 8).put ((byte) 'x').putShort ((short) 0).put ((byte) 0);
+    e.putInt (10 | 12 << 8).putInt (33 | 8 << 8).putDouble (89);
+    assertArrayEquals (e.array (), a.toByteArray ());
+  }
+
+  @Test
+  public void rawWithoutCopy () throws Exception {
+    ByteBuffer d = allocateDirect (5).put ("bytes".getBytes ()).flip ();
+    ByteBuffer[] b = new Assign ("x", d).encode (null).toArray (ByteBuffer[]::new);
+    assertThat (b[5].order (LITTLE_ENDIAN).getInt (0), is (37 | 12 << 8));
+    assertThat (b[6].getInt (0), is (5));
+    d.put (0, (byte) 'B');
+    assertThat (b[7].get (0), is ((byte) 'B'));
+    assertThat (b[8].remaining (), is (3));
+    assertThat (d.position (), is (0));
+  }
+
+  @Test
+  public void streamedThroughChunks () throws Exception {
+    List <Integer> v = range (0, 100000).boxed ().collect (toList ());
+    ByteArrayOutputStream e = new ByteArrayOutputStream ();
+    new Assign ("x", v).encode (new ObjectMapper ()).forEach (b -> e.write (b.array (), b.position (), b.remaining ()));
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    List <Boolean> l = new ArrayList <> ();
+    new Assign ("x", v).encode (new ObjectMapper (), (b, z) -> {
+      assertThat (b.remaining () <= SpooledOutputStream.CHUNK_SIZE, is (true));
+      l.add (z);
+      while (b.hasRemaining ())
+        a.write (b.get ());
+    });
+    assertArrayEquals (e.toByteArray (), a.toByteArray ());
+    assertThat (l.indexOf (true), is (l.size () - 1));
+    assertThat (l.size () > 5, is (true));
+  }
+
+  @Test
+  public void spilledPastMemory () throws Exception {
+    List <Integer> v = range (0, 400000).boxed ().collect (toList ());
+    ByteArrayOutputStream e = new ByteArrayOutputStream ();
+    new Assign ("x", v).encode (new ObjectMapper ()).forEach (b -> e.write (b.array (), b.position (), b.remaining ()));
+    assertThat (e.size () > 1 << 20, is (true));
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    List <Boolean> l = new ArrayList <> ();
+    System.setProperty (SpooledOutputStream.MEMORY_PROPERTY, Integer.toString (1 << 20));
+    try {
+      new Assign ("x", v).encode (new ObjectMapper (), (b, z) -> {
+        l.add (z);
+        while (b.hasRemaining ())
+          a.write (b.get ());
+      });
+    } finally {
+      System.clearProperty (SpooledOutputStream.MEMORY_PROPERTY);
+    }
+    assertArrayEquals (e.toByteArray (), a.toByteArray ());
+    assertThat (l.indexOf (true), is (l.size () - 1));
+  }
+
+  @Test
+  public void spoolSpillsPastThreshold () throws Exception {
+    byte[] d = new byte[3 * SpooledOutputStream.CHUNK_SIZE + 5];
+    for (int i = 0; i < d.length; i++)
+      d[i] = (byte) i;
+    SpooledOutputStream o = new SpooledOutputStream (SpooledOutputStream.CHUNK_SIZE), m = new SpooledOutputStream ();
+    try {
+      o.write (d);
+      m.write (d);
+      assertThat (o.spilled (), is (true));
+      assertThat (m.spilled (), is (false));
+      ByteArrayOutputStream a = new ByteArrayOutputStream ();
+      o.drain ( (b, z) -> {
+        while (b.hasRemaining ())
+          a.write (b.get ());
+      }, true);
+      assertArrayEquals (d, a.toByteArray ());
+    } finally {
+      o.release ();
+      m.release ();
+    }
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static java.nio.ByteBuffer.wrap;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ResolveAllTest {
+
+  private final Map <String, Type> types = new LinkedHashMap <> ();
+  {
+    types.put ("a", int.class);
+    types.put ("b`c", new TypeReference <List <Long>> () {}.getType ());
+  }
+
+  private byte[] bytes (Stream <java.nio.ByteBuffer> s) {
+    ByteArrayOutputStream a = new ByteArrayOutputStream ();
+    s.forEach (b -> a.write (b.array (), b.position (), b.remaining ()));
+    return a.toByteArray ();
+  }
+
+  @Test
+  public void list () throws Exception {
+    assertArrayEquals (bytes (new Resolve <> ("list(`a` = a, `b\\`c` = b`c)", Object.class).encode (null)),
+                       bytes (new ResolveAll (types).encode (null)));
+  }
+
+  @Test
+  public void split () throws Exception {
+    Map <String, Object> r = new ResolveAll (types).decode (wrap ("{\"a\":1,\"x\":{\"y\":[]},\"b`c\":[2,3]}".getBytes ()),
+                                                            new ObjectMapper ());
+    assertThat (r.get ("a"), is (1));
+    assertThat (r.get ("b`c"), is (asList (2L, 3L)));
+    assertThat (r.size (), is (2));
+  }
+}
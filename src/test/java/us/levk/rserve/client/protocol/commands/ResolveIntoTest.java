@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.protocol.commands;
+
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+import org.junit.Test;
+
+public class ResolveIntoTest {
+
+  private ByteBuffer doubles (double... d) {
+    ByteBuffer b = allocate (4 + 8 * d.length).order (LITTLE_ENDIAN).putInt (33 | 8 * d.length << 8);
+    for (double v : d)
+      b.putDouble (v);
+    return b.flip ();
+  }
+
+  private ByteBuffer integers (int... i) {
+    ByteBuffer b = allocate (4 + 4 * i.length).order (LITTLE_ENDIAN).putInt (32 | 4 * i.length << 8);
+    for (int v : i)
+      b.putInt (v);
+    return b.flip ();
+  }
+
+  @Test
+  public void intoArray () throws Exception {
+    double[] d = new double[2];
+    assertThat (new ResolveInto <> ("r", d).decode (doubles (1, 2), null), is (sameInstance (d)));
+    assertArrayEquals (new double[] { 1, 2 }, d, 0);
+  }
+
+  @Test
+  public void intoBuffer () throws Exception {
+    DoubleBuffer d = DoubleBuffer.allocate (3).position (1);
+    new ResolveInto <> ("r", d).decode (doubles (5, 6), null);
+    assertThat (d.position (), is (1));
+    assertThat (d.get (2), is (6.0));
+  }
+
+  @Test
+  public void widen () throws Exception {
+    long[] l = new long[2];
+    new ResolveInto <> ("r", l).decode (integers (7, 8), null);
+    assertArrayEquals (new long[] { 7, 8 }, l);
+    new ResolveInto <> ("r", l).decode (doubles (9, 10), null);
+    assertArrayEquals (new long[] { 9, 10 }, l);
+  }
+
+  @Test
+  public void widenMissing () throws Exception {
+    long[] l = new long[2];
+    new ResolveInto <> ("r", l).decode (integers (7, Integer.MIN_VALUE), null);
+    assertArrayEquals (new long[] { 7, Long.MIN_VALUE }, l);
+  }
+
+  @Test
+  public void fractionalUntouched () throws Exception {
+    long[] l = { 3, 4 };
+    try {
+      new ResolveInto <> ("r", l).decode (doubles (1, 2.5), null);
+      fail ();
+    } catch (IOException e) {
+      assertArrayEquals (new long[] { 3, 4 }, l);
+    }
+  }
+
+  @Test (expected = IOException.class)
+  public void lengthMismatch () throws Exception {
+    new ResolveInto <> ("r", new int[3]).decode (integers (1, 2), null);
+  }
+
+  @Test (expected = IOException.class)
+  public void narrow () throws Exception {
+    new ResolveInto <> ("r", new int[1]).decode (doubles (1), null);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void unsupported () {
+    new ResolveInto <> ("r", new float[1]);
+  }
+}
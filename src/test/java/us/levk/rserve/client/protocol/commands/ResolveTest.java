@@ -25,8 +25,21 @@
  */
 package us.levk.rserve.client.protocol.commands;
 
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.ByteBuffer.wrap;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import us.levk.rserve.client.Streams;
 
 public class ResolveTest implements Streams {
@@ -35,4 +48,42 @@ public class ResolveTest implements Streams {
   public void resolveFoo () throws Exception {
     assertOutput (new Resolve <String> ("foo", String.class).encode (null), "/resolveFoo.b64");
   }
+
+  @Test
+  public void decodeDirect () throws Exception {
+    ByteBuffer b = allocateDirect (8).put ("[89,90]".getBytes ());
+    b.flip ();
+    assertThat (new Resolve <int[]> ("r", int[].class).decode (b, new ObjectMapper ())[1], is (90));
+  }
+
+  @Test
+  public void decodeDoublesBypassMapper () throws Exception {
+    ByteBuffer b = allocate (12).order (LITTLE_ENDIAN).putInt (33 | 8 << 8).putDouble (89).flip ();
+    assertThat (new Resolve <double[]> ("r", double[].class).decode (b, null)[0], is (89.0));
+    assertThat (new Resolve <DoubleBuffer> ("r", DoubleBuffer.class).retains (), is (true));
+  }
+
+  @Test
+  public void decodeStringsDeduplicated () throws Exception {
+    ByteBuffer b = allocate (12).order (LITTLE_ENDIAN).putInt (34 | 8 << 8).put ("ab\0ab\0\1\1".getBytes ()).flip ();
+    String[] s = new Resolve <String[]> ("r", String[].class, 16).decode (b, null);
+    assertThat (s.length, is (2));
+    assertThat (s[1], is (sameInstance (s[0])));
+  }
+
+  @Test
+  public void decodeRawView () throws Exception {
+    ByteBuffer b = allocate (12).order (LITTLE_ENDIAN).putInt (37 | 8 << 8).putInt (3).put ("abc\0".getBytes ()).flip ();
+    ByteBuffer r = new Resolve <ByteBuffer> ("r", ByteBuffer.class).decode (b, null);
+    assertThat (r.remaining (), is (3));
+    assertThat (r.get (2), is ((byte) 'c'));
+    assertThat (new Resolve <ByteBuffer> ("r", ByteBuffer.class).retains (), is (true));
+  }
+
+  @Test
+  public void decodeSlice () throws Exception {
+    ByteBuffer b = wrap ("xx89".getBytes ());
+    b.position (2);
+    assertThat (new Resolve <Integer> ("r", Integer.class).decode (b.slice (), new ObjectMapper ()), is (89));
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.socket;
+
+import static java.net.InetAddress.getLoopbackAddress;
+import static java.net.StandardProtocolFamily.UNIX;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static us.levk.rserve.client.Client.rserve;
+import static us.levk.rserve.client.mocks.QapServerMock.ID;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import us.levk.rserve.client.Client;
+import us.levk.rserve.client.Streams;
+import us.levk.rserve.client.mocks.QapServerMock;
+
+public class EndpointTest implements Streams {
+
+  private QapServerMock server (String i) throws IOException {
+    return new QapServerMock (ServerSocketChannel.open ().bind (new InetSocketAddress (getLoopbackAddress (), 0)), i);
+  }
+
+  private Client tcp (QapServerMock s) throws IOException {
+    return rserve ().tcp ().connect ((InetSocketAddress) s.address ());
+  }
+
+  @Test
+  public void tcpEvaluateFooToBar () throws Exception {
+    try (QapServerMock s = server (ID).add (loadb64 ("/evaluateFooToBar.b64").array (),
+                                            loadb64 ("/emptyPacket.b64").array ()).start ();
+         Client c = tcp (s)) {
+      assertNull (c.evaluate ("foo<-'bar'").get (10, SECONDS));
+    }
+  }
+
+  @Test
+  public void tcpResolveRTo89 () throws Exception {
+    try (QapServerMock s = server (ID).add (loadb64 ("/resolveR.b64").array (),
+                                            loadb64 ("/int89Packet.b64").array ()).start ();
+         Client c = tcp (s)) {
+      assertThat (c.resolve ("r", Integer.class).get (10, SECONDS), is (89));
+    }
+  }
+
+  @Test
+  public void tcpPushDataTsv () throws Exception {
+    try (QapServerMock s = server (ID).add (loadb64 ("/createDataTsv.b64").array (),
+                                            loadb64 ("/emptyPacket.b64").array ())
+                                      .add (loadb64 ("/writeDataTsv.b64").array (),
+                                            loadb64 ("/emptyPacket.b64").array ())
+                                      .add (loadb64 ("/close.b64").array (), loadb64 ("/emptyPacket.b64").array ())
+                                      .start ();
+         Client c = tcp (s)) {
+      c.push (new File ("src/test/resources/data.tsv")).get (10, SECONDS);
+    }
+  }
+
+  @Test
+  public void unixEvaluateFooToBar () throws Exception {
+    UnixDomainSocketAddress a = UnixDomainSocketAddress.of (Files.createTempDirectory ("").resolve ("rserve.sock"));
+    try (QapServerMock s = new QapServerMock (ServerSocketChannel.open (UNIX).bind (a), ID)
+        .add (loadb64 ("/evaluateFooToBar.b64").array (), loadb64 ("/emptyPacket.b64").array ()).start ();
+         Client c = rserve ().unix ().connect ((UnixDomainSocketAddress) s.address ())) {
+      assertNull (c.evaluate ("foo<-'bar'").get (10, SECONDS));
+    }
+  }
+
+  @Test (expected = IOException.class)
+  public void tcpAuthenticationRequired () throws Exception {
+    try (QapServerMock s = server ("Rsrv0103QAP1ARpt----------------").start ()) {
+      tcp (s).close ();
+    }
+  }
+
+  @Test
+  public void tcpBadResponseClosesSession () throws Exception {
+    byte[] h = allocate (16).order (LITTLE_ENDIAN).putInt (0x10001).putInt (0).putInt (0).putInt (1).array ();
+    try (QapServerMock s = server (ID).add (loadb64 ("/evaluateFooToBar.b64").array (), h).start (); Client c = tcp (s)) {
+      CompletableFuture <Void> a = c.evaluate ("foo<-'bar'"), b = c.evaluate ("foo<-'bar'");
+      try {
+        a.get (10, SECONDS);
+        fail ();
+      } catch (ExecutionException e) {
+        assertThat (e.getCause (), instanceOf (IOException.class));
+      }
+      try {
+        b.get (10, SECONDS);
+        fail ();
+      } catch (ExecutionException e) {
+        assertThat (e.getCause ().getMessage (), is ("Session closed after a failed exchange"));
+      }
+    }
+  }
+
+  @Test
+  public void tcpEncodeFailureKeepsSession () throws Exception {
+    try (QapServerMock s = server (ID).add (loadb64 ("/evaluateFooToBar.b64").array (),
+                                            loadb64 ("/emptyPacket.b64").array ()).start ();
+         Client c = tcp (s)) {
+      CompletableFuture <Void> a = c.execute (m -> {
+        throw new IOException ("unencodable");
+      });
+      try {
+        a.get (10, SECONDS);
+        fail ();
+      } catch (ExecutionException e) {
+        assertThat (e.getCause ().getMessage (), is ("unencodable"));
+      }
+      assertNull (c.evaluate ("foo<-'bar'").get (10, SECONDS));
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 lev.v.kuznetsov@gmail.com
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package us.levk.rserve.client.tools.nio;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+  @Test
+  public void acquirePowerOfTwo () throws Exception {
+    assertThat (new BufferPool (1, 1 << 20).acquire (1000).capacity (), is (1024));
+  }
+
+  @Test
+  public void releaseReuse () throws Exception {
+    BufferPool p = new BufferPool (1, 1 << 20);
+    ByteBuffer b = p.acquire (1024);
+    p.release (b.put ((byte) 1));
+    assertThat (p.acquire (600), sameInstance (b));
+    assertThat (b.position (), is (0));
+  }
+
+  @Test
+  public void growCopies () throws Exception {
+    BufferPool p = new BufferPool (1, 1 << 20);
+    ByteBuffer b = p.acquire (2).put ((byte) 1).put ((byte) 2);
+    ByteBuffer g = p.grow (b, 3);
+    assertThat (g.capacity (), is (4));
+    assertThat (g.position (), is (2));
+    assertThat (g.get (1), is ((byte) 2));
+    assertThat (p.acquire (2), sameInstance (b));
+  }
+}